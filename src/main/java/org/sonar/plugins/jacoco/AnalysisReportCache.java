@@ -0,0 +1,428 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.sensor.cache.ReadCache;
+import org.sonar.api.batch.sensor.cache.WriteCache;
+
+/**
+ * Keeps a compact binary form of the parsed reports in the cache of the analysis, so that the next analysis of the same branch loads
+ * the reports which didn't change instead of parsing them again. Reports are identified by the SHA-256 digest of their content, since
+ * the same report may be found at different paths, or at the same path with a different content, from one analysis to the other.
+ * <p>
+ * The binary form lists the source files with their names, written once and then referred to by index, and their lines as variable
+ * length integers, which usually takes a few bytes per line. The lines of each source file are preceded by their length in bytes, so
+ * that the lines of the source files rejected by the filter of the import are skipped when loading the report. A report missing from
+ * the cache is parsed whole, regardless of the filter, since its binary form is needed for all the source files by the next analysis.
+ */
+class AnalysisReportCache {
+  private static final Logger LOG = LoggerFactory.getLogger(AnalysisReportCache.class);
+  private static final int FORMAT_VERSION = 2;
+  private static final String KEY_PREFIX = "jacoco:report:v" + FORMAT_VERSION + ":";
+  private static final String SLICE_KEY_PREFIX = "slice:";
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final ReadCache previousCache;
+  private final WriteCache nextCache;
+
+  AnalysisReportCache(ReadCache previousCache, WriteCache nextCache) {
+    this.previousCache = previousCache;
+    this.nextCache = nextCache;
+  }
+
+  /**
+   * Streams the source files of the report to the consumer, loaded from the previous analysis when it parsed the same report, or else
+   * with the given parser, which must read all the source files with their lines, storing their binary form for the next analysis.
+   *
+   * @param names the table interning the names of the loaded source files, as when parsing the report
+   * @param sourceFileFilter the filter of the loaded source files, whose rejected ones are handed over without their lines
+   */
+  void parse(Path reportPath, Consumer<Consumer<XmlReportParser.SourceFile>> parser, NameTable names,
+    @Nullable Predicate<XmlReportParser.SourceFile> sourceFileFilter, Consumer<XmlReportParser.SourceFile> consumer) {
+    parse(reportPath, key(reportPath), parser, names, sourceFileFilter, consumer);
+  }
+
+  /**
+   * Like {@link #parse(Path, Consumer, NameTable, Predicate, Consumer)}, for the packages of the report found between the given
+   * offsets, see {@link ReportIndex}. Slices are identified by the digest of their own bytes, so that the slices of a module are
+   * loaded from the previous analysis as long as their packages didn't change, even when other packages of the report did.
+   *
+   * @param groupName the group of the first package of the slice, which is not part of its bytes
+   */
+  void parseSlice(Path reportPath, long start, long end, @Nullable String groupName, Consumer<Consumer<XmlReportParser.SourceFile>> parser,
+    NameTable names, @Nullable Predicate<XmlReportParser.SourceFile> sourceFileFilter, Consumer<XmlReportParser.SourceFile> consumer) {
+    parse(reportPath, sliceKey(reportPath, start, end, groupName), parser, names, sourceFileFilter, consumer);
+  }
+
+  private void parse(Path reportPath, @Nullable String key, Consumer<Consumer<XmlReportParser.SourceFile>> parser, NameTable names,
+    @Nullable Predicate<XmlReportParser.SourceFile> sourceFileFilter, Consumer<XmlReportParser.SourceFile> consumer) {
+    if (key == null) {
+      parser.accept(consumer);
+      return;
+    }
+    if (previousCache.contains(key) && load(reportPath, key, names, sourceFileFilter, consumer)) {
+      copyFromPrevious(key);
+      return;
+    }
+    parseAndStore(reportPath, key, parser, consumer);
+  }
+
+  @CheckForNull
+  private static String key(Path reportPath) {
+    try (InputStream input = ReportInput.open(reportPath).asInputStream()) {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] buffer = new byte[64 * 1024];
+      int read;
+      while ((read = input.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+      return KEY_PREFIX + hex(digest.digest());
+    } catch (IOException | NoSuchAlgorithmException e) {
+      LOG.debug("Failed to compute the digest of report '{}', it won't be cached: {}", reportPath, e.getMessage());
+      return null;
+    }
+  }
+
+  @CheckForNull
+  private static String sliceKey(Path reportPath, long start, long end, @Nullable String groupName) {
+    try (FileChannel channel = FileChannel.open(reportPath, StandardOpenOption.READ)) {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      if (groupName != null) {
+        digest.update((byte) 1);
+        digest.update(groupName.getBytes(StandardCharsets.UTF_8));
+      }
+      digest.update((byte) 0);
+      ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+      long position = start;
+      while (position < end) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), end - position));
+        int read = channel.read(buffer, position);
+        if (read < 0) {
+          throw new EOFException("Unexpected end of report at offset " + position);
+        }
+        buffer.flip();
+        digest.update(buffer);
+        position += read;
+      }
+      return KEY_PREFIX + SLICE_KEY_PREFIX + hex(digest.digest());
+    } catch (IOException | NoSuchAlgorithmException e) {
+      LOG.debug("Failed to compute the digest of a slice of report '{}', it won't be cached: {}", reportPath, e.getMessage());
+      return null;
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+      chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+    }
+    return new String(chars);
+  }
+
+  /**
+   * @return false when the cached form can't be read before any source file was handed over, so that the report can be parsed instead
+   */
+  private boolean load(Path reportPath, String key, NameTable names, @Nullable Predicate<XmlReportParser.SourceFile> sourceFileFilter,
+    Consumer<XmlReportParser.SourceFile> consumer) {
+    boolean started = false;
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(previousCache.read(key)))) {
+      Decoder decoder = new Decoder(input, names, sourceFileFilter);
+      XmlReportParser.SourceFile sourceFile;
+      while ((sourceFile = decoder.next()) != null) {
+        started = true;
+        consumer.accept(sourceFile);
+      }
+      LOG.debug("Loaded report '{}' from the analysis cache", reportPath);
+      return true;
+    } catch (IOException | RuntimeException e) {
+      if (started) {
+        throw new IllegalStateException("Failed to load report '" + reportPath + "' from the analysis cache", e);
+      }
+      LOG.debug("Failed to load report '{}' from the analysis cache, parsing it instead: {}", reportPath, e.getMessage());
+      return false;
+    }
+  }
+
+  private void parseAndStore(Path reportPath, String key, Consumer<Consumer<XmlReportParser.SourceFile>> parser,
+    Consumer<XmlReportParser.SourceFile> consumer) {
+    Path binaryForm = null;
+    Encoder encoder = null;
+    try {
+      binaryForm = Files.createTempFile("jacoco-report", ".bin");
+      encoder = new Encoder(new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(binaryForm))));
+    } catch (IOException e) {
+      LOG.debug("Failed to create the binary form of report '{}', it won't be cached: {}", reportPath, e.getMessage());
+    }
+
+    try {
+      Encoder sourceFileEncoder = encoder;
+      parser.accept(sourceFile -> {
+        if (sourceFileEncoder != null) {
+          sourceFileEncoder.write(sourceFile);
+        }
+        consumer.accept(sourceFile);
+      });
+      if (encoder != null && encoder.close()) {
+        store(key, binaryForm);
+      }
+    } finally {
+      if (encoder != null) {
+        encoder.close();
+      }
+      deleteQuietly(binaryForm);
+    }
+  }
+
+  private synchronized void store(String key, Path binaryForm) {
+    try (InputStream input = Files.newInputStream(binaryForm)) {
+      nextCache.write(key, input);
+    } catch (IOException | IllegalArgumentException e) {
+      // The same report may be imported by several modules, only its first binary form is kept
+      LOG.debug("Failed to store report '{}' in the analysis cache: {}", key, e.getMessage());
+    }
+  }
+
+  private synchronized void copyFromPrevious(String key) {
+    try {
+      nextCache.copyFromPrevious(key);
+    } catch (IllegalArgumentException e) {
+      LOG.debug("Failed to keep report '{}' in the analysis cache: {}", key, e.getMessage());
+    }
+  }
+
+  private static void deleteQuietly(@Nullable Path path) {
+    if (path != null) {
+      try {
+        Files.deleteIfExists(path);
+      } catch (IOException e) {
+        // do nothing - temporary files are cleaned up by the system anyway
+      }
+    }
+  }
+
+  /**
+   * Writes the binary form of the source files, giving up on the first failure, which only prevents the report from being cached.
+   */
+  static class Encoder {
+    private final DataOutputStream output;
+    private final ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+    private final DataOutputStream lines = new DataOutputStream(lineBytes);
+    private final Map<String, Integer> nameIndexes = new HashMap<>();
+    private boolean failed;
+    private boolean closed;
+
+    Encoder(DataOutputStream output) {
+      this.output = output;
+      try {
+        output.writeInt(FORMAT_VERSION);
+      } catch (IOException e) {
+        failed = true;
+      }
+    }
+
+    void write(XmlReportParser.SourceFile sourceFile) {
+      if (failed) {
+        return;
+      }
+      try {
+        output.writeBoolean(true);
+        writeName(sourceFile.groupName());
+        writeName(sourceFile.packageName());
+        writeName(sourceFile.name());
+        writeVarInt(output, sourceFile.lineCount());
+        lineBytes.reset();
+        sourceFile.forEachLine((number, missedInstrs, coveredInstrs, missedBranches, coveredBranches) -> {
+          try {
+            writeVarInt(lines, number);
+            writeVarInt(lines, missedInstrs);
+            writeVarInt(lines, coveredInstrs);
+            writeVarInt(lines, missedBranches);
+            writeVarInt(lines, coveredBranches);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+        writeVarInt(output, lineBytes.size());
+        lineBytes.writeTo(output);
+      } catch (IOException | UncheckedIOException e) {
+        failed = true;
+      }
+    }
+
+    /**
+     * Names are written once, and then referred to by their index plus one, 0 meaning no name.
+     */
+    private void writeName(@Nullable String name) throws IOException {
+      if (name == null) {
+        writeVarInt(output, 0);
+        return;
+      }
+      Integer index = nameIndexes.get(name);
+      if (index != null) {
+        writeVarInt(output, index + 1);
+        return;
+      }
+      nameIndexes.put(name, nameIndexes.size());
+      writeVarInt(output, nameIndexes.size());
+      output.writeUTF(name);
+    }
+
+    /**
+     * @return whether the binary form is complete
+     */
+    boolean close() {
+      if (closed) {
+        return !failed;
+      }
+      closed = true;
+      try {
+        try {
+          if (!failed) {
+            output.writeBoolean(false);
+          }
+        } finally {
+          output.close();
+        }
+      } catch (IOException e) {
+        failed = true;
+      }
+      return !failed;
+    }
+  }
+
+  static class Decoder {
+    private final DataInput input;
+    private final NameTable nameTable;
+    @Nullable
+    private final Predicate<XmlReportParser.SourceFile> sourceFileFilter;
+    private final List<String> names = new ArrayList<>();
+    private boolean done;
+
+    Decoder(DataInput input, NameTable nameTable, @Nullable Predicate<XmlReportParser.SourceFile> sourceFileFilter) throws IOException {
+      this.input = input;
+      this.nameTable = nameTable;
+      this.sourceFileFilter = sourceFileFilter;
+      int version = input.readInt();
+      if (version != FORMAT_VERSION) {
+        throw new IOException("Unsupported format version " + version);
+      }
+    }
+
+    @CheckForNull
+    XmlReportParser.SourceFile next() throws IOException {
+      if (done || !input.readBoolean()) {
+        done = true;
+        return null;
+      }
+      String groupName = readName();
+      String packageName = readName();
+      String name = readName();
+      if (packageName == null || name == null) {
+        throw new IOException("Invalid source file without name");
+      }
+      XmlReportParser.SourceFile sourceFile = new XmlReportParser.SourceFile(packageName, name, groupName);
+      int lines = readVarInt(input);
+      int length = readVarInt(input);
+      if (sourceFileFilter != null && !sourceFileFilter.test(sourceFile)) {
+        // The lines of the file are not needed
+        if (input.skipBytes(length) != length) {
+          throw new IOException("Truncated lines of source file " + name);
+        }
+        return sourceFile;
+      }
+      for (; lines > 0; lines--) {
+        sourceFile.addLine(readVarInt(input), readVarInt(input), readVarInt(input), readVarInt(input), readVarInt(input));
+      }
+      return sourceFile;
+    }
+
+    @CheckForNull
+    private String readName() throws IOException {
+      int reference = readVarInt(input);
+      if (reference == 0) {
+        return null;
+      }
+      if (reference <= names.size()) {
+        return names.get(reference - 1);
+      }
+      if (reference != names.size() + 1) {
+        throw new IOException("Invalid name reference " + reference);
+      }
+      String name = nameTable.intern(input.readUTF());
+      names.add(name);
+      return name;
+    }
+  }
+
+  /**
+   * Writes the int on 1 byte up to 127, 2 bytes up to 16383, and so on, 7 bits per byte, negative values taking 5 bytes.
+   */
+  static void writeVarInt(DataOutput output, int value) throws IOException {
+    int remaining = value;
+    while ((remaining & ~0x7F) != 0) {
+      output.writeByte((remaining & 0x7F) | 0x80);
+      remaining >>>= 7;
+    }
+    output.writeByte(remaining);
+  }
+
+  static int readVarInt(DataInput input) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      byte b = input.readByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Invalid variable length integer");
+  }
+}
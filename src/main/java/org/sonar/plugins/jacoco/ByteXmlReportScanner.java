@@ -0,0 +1,739 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+
+/**
+ * A scanner dedicated to the JaCoCo XML report grammar, working directly on the UTF-8 bytes of the report.
+ * Only the 'report', 'group', 'package', 'sourcefile' and 'line' elements are interpreted, everything else is skipped:
+ * 'class' elements are skipped as a whole with their 'method' and 'counter' children, and the attributes of other elements are never read.
+ * The counters of the 'line' elements are decoded straight into ints, without going through intermediate Strings.
+ * <p>
+ * It produces the same {@link XmlReportParser.SourceFile}s, and fails with the same messages, as the StAX based implementation.
+ * Self-closing elements are handled as an element immediately followed by its end tag, so that a self-closing 'sourcefile' is a source
+ * file without lines, and a self-closing 'package' or 'group' doesn't enclose what follows it.
+ * Locations reported in error messages point right after the end of the offending start tag, as StAX does.
+ * <p>
+ * The 'package' elements of a report can also be located without being parsed, see {@link #scanPackageRanges()}, and then be scanned
+ * independently of each other, see {@link #ByteXmlReportScanner(ReportInput, NameTable, PackageRange)}.
+ */
+class ByteXmlReportScanner {
+  private static final int EOF = -1;
+
+  private static final byte[] REPORT = ascii("report");
+  private static final byte[] GROUP = ascii("group");
+  private static final byte[] PACKAGE = ascii("package");
+  private static final byte[] SOURCEFILE = ascii("sourcefile");
+  private static final byte[] LINE = ascii("line");
+  private static final byte[] CLASS = ascii("class");
+  private static final byte[] NAME = ascii("name");
+
+  private static final byte[] PROCESSING_INSTRUCTION_END = ascii("?>");
+  private static final byte[] COMMENT_END = ascii("-->");
+  private static final byte[] CDATA_END = ascii("]]>");
+
+  private static final String[] LINE_ATTRIBUTES = {"nr", "mi", "ci", "mb", "cb"};
+  private static final int NR = 0;
+
+  private static final String COLUMN = " column ";
+
+  private final ReportInput input;
+  private final NameTable names;
+  private final NameTable.Utf8Name nameProbe = new NameTable.Utf8Name();
+  private ByteBuffer buffer = ByteBuffer.allocate(0);
+  private int position;
+  private int limit;
+  private long bufferOffset;
+
+  private int lineNumber = 1;
+  private long lineStartOffset;
+
+  private byte[] name = new byte[32];
+  private int nameLength;
+  private byte[] value = new byte[256];
+  private int valueLength;
+  private boolean valueNeedsDecoding;
+
+  private final int[] lineValues = new int[LINE_ATTRIBUTES.length];
+  private final boolean[] lineValuePresent = new boolean[LINE_ATTRIBUTES.length];
+  private final boolean[] lineValueInvalid = new boolean[LINE_ATTRIBUTES.length];
+
+  private String groupName;
+  private String packageName;
+  private XmlReportParser.SourceFile currentFile;
+  private boolean reportStarted;
+  private boolean reportEnded;
+  private boolean selfClosing;
+
+  @Nullable
+  private Predicate<XmlReportParser.SourceFile> sourceFileFilter;
+  private final boolean fragment;
+  private List<PackageRange> packageRanges;
+  private long tagStartOffset;
+  private int tagStartLineNumber;
+  private long tagStartLineOffset;
+
+  ByteXmlReportScanner(ReportInput input) {
+    this(input, new NameTable());
+  }
+
+  ByteXmlReportScanner(ReportInput input, NameTable names) {
+    this.input = input;
+    this.names = names;
+    this.fragment = false;
+  }
+
+  /**
+   * Creates a scanner for a fragment of a report, the first byte of which is the start of the given 'package' element.
+   * The fragment is scanned in the context of that element: the enclosing group, as well as the lines and offsets reported in errors,
+   * are the same as when the whole report is scanned.
+   */
+  ByteXmlReportScanner(ReportInput input, NameTable names, PackageRange first) {
+    this.input = input;
+    this.names = names;
+    this.fragment = true;
+    this.reportStarted = true;
+    this.groupName = first.groupName;
+    this.bufferOffset = first.start;
+    this.lineNumber = first.lineNumber;
+    this.lineStartOffset = first.lineStartOffset;
+  }
+
+  /**
+   * Source files rejected by the filter when their 'sourcefile' element starts are handed over without their lines, which are skipped
+   * without being decoded.
+   */
+  ByteXmlReportScanner setSourceFileFilter(@Nullable Predicate<XmlReportParser.SourceFile> sourceFileFilter) {
+    this.sourceFileFilter = sourceFileFilter;
+    return this;
+  }
+
+  /**
+   * Scans the whole report for its 'package' elements, the content of which is skipped without being parsed.
+   * Everything outside of 'package' elements is parsed and validated as by {@link #scan(Consumer)}.
+   */
+  List<PackageRange> scanPackageRanges() throws IOException {
+    packageRanges = new ArrayList<>();
+    scan(sourceFile -> {
+      // source files are only produced within 'package' elements, which are skipped
+    });
+    return packageRanges;
+  }
+
+  void scan(Consumer<XmlReportParser.SourceFile> consumer) throws IOException {
+    while (!reportEnded) {
+      if (!skipPast('<')) {
+        if (fragment) {
+          return;
+        }
+        throw new EOFException("Unexpected end of report, the 'report' element is not closed");
+      }
+      tagStartOffset = bufferOffset + position - 1;
+      tagStartLineNumber = lineNumber;
+      tagStartLineOffset = lineStartOffset;
+      int b = read();
+      if (b == '?') {
+        skipPast(PROCESSING_INSTRUCTION_END);
+      } else if (b == '!') {
+        skipMarkupDeclaration();
+      } else if (b == '/') {
+        endElement(consumer);
+      } else if (b == EOF) {
+        throw new EOFException("Unexpected end of report within a tag");
+      } else {
+        startElement(b, consumer);
+      }
+    }
+    if (!fragment) {
+      skipEpilog();
+    }
+  }
+
+  /**
+   * Skips what follows the 'report' element, which can only be whitespace, comments and processing instructions.
+   */
+  private void skipEpilog() throws IOException {
+    int b;
+    while ((b = read()) != EOF) {
+      if (b != '<') {
+        if (!isWhitespace(b)) {
+          throw new IOException("Unexpected content after the 'report' element at line " + location());
+        }
+      } else if ((b = readRequired()) == '?') {
+        skipPast(PROCESSING_INSTRUCTION_END);
+      } else if (b == '!' && readRequired() == '-' && readRequired() == '-') {
+        skipPast(COMMENT_END);
+      } else {
+        throw new IOException("Unexpected content after the 'report' element at line " + location());
+      }
+    }
+  }
+
+  private void startElement(int firstByte, Consumer<XmlReportParser.SourceFile> consumer) throws IOException {
+    int b = readName(firstByte);
+    if (!reportStarted) {
+      if (!nameIs(REPORT)) {
+        throw new IOException("Not a JaCoCo report: unexpected root element '" + new String(name, 0, nameLength, StandardCharsets.UTF_8) + "'");
+      }
+      reportStarted = true;
+      skipAttributes(b);
+      reportEnded = selfClosing;
+    } else if (nameIs(LINE)) {
+      startLine(b);
+    } else if (nameIs(SOURCEFILE)) {
+      startSourceFile(b, consumer);
+    } else if (nameIs(PACKAGE)) {
+      packageName = readNameAttribute(b, "for a 'package' at line ");
+      if (packageRanges != null) {
+        skipPackage();
+      } else if (selfClosing) {
+        packageName = null;
+      }
+    } else if (nameIs(GROUP)) {
+      // The missing space after "line" is kept on purpose to report the same message as the StAX based parser
+      groupName = readNameAttribute(b, "for a 'group' at line");
+      if (selfClosing) {
+        groupName = null;
+      }
+    } else if (nameIs(CLASS)) {
+      skipSubtree(b, CLASS);
+    } else {
+      skipTag(b);
+    }
+  }
+
+  private void skipPackage() throws IOException {
+    PackageRange range = new PackageRange(tagStartOffset, groupName, packageName, tagStartLineNumber, tagStartLineOffset);
+    if (!selfClosing) {
+      skipToEndTag(PACKAGE);
+    }
+    packageName = null;
+    range.end = bufferOffset + position;
+    packageRanges.add(range);
+  }
+
+  /**
+   * Skips a whole element, the name of which has already been read, with all its children.
+   * No element contains an element with the same name in the JaCoCo report grammar, so the subtree ends with the first closing tag
+   * bearing that name: there is no need to look at anything but closing tags.
+   */
+  private void skipSubtree(int b, byte[] elementName) throws IOException {
+    if (!skipTag(b)) {
+      skipToEndTag(elementName);
+    }
+  }
+
+  private void skipToEndTag(byte[] elementName) throws IOException {
+    while (true) {
+      if (!skipPast('<')) {
+        throw new EOFException("Unexpected end of report, the '" + new String(elementName, StandardCharsets.US_ASCII) + "' element is not closed");
+      }
+      int b = readRequired();
+      if (b == '/' && nextBytesAre(elementName)) {
+        b = readRequired();
+        if (b == '>' || isWhitespace(b)) {
+          skipTag(b);
+          return;
+        }
+      } else if (b == '!') {
+        skipMarkupDeclaration();
+      }
+    }
+  }
+
+  private boolean nextBytesAre(byte[] expected) throws IOException {
+    for (byte e : expected) {
+      if (readRequired() != e) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Skips the rest of a tag, starting from the given byte, without looking at its attributes.
+   *
+   * @return whether the tag is self-closing
+   */
+  private boolean skipTag(int b) throws IOException {
+    int previous = 0;
+    while (b != '>') {
+      if (b == '"' || b == '\'') {
+        int quote = b;
+        do {
+          b = readRequired();
+        } while (b != quote);
+      }
+      previous = b;
+      b = readRequired();
+    }
+    return previous == '/';
+  }
+
+  private void endElement(Consumer<XmlReportParser.SourceFile> consumer) throws IOException {
+    int b = readName(read());
+    skipAttributes(b);
+    if (nameIs(SOURCEFILE)) {
+      if (currentFile != null) {
+        consumer.accept(currentFile);
+      }
+      currentFile = null;
+    } else if (nameIs(PACKAGE)) {
+      packageName = null;
+    } else if (nameIs(GROUP)) {
+      groupName = null;
+    } else if (nameIs(REPORT)) {
+      reportEnded = true;
+    }
+  }
+
+  private void startSourceFile(int b, Consumer<XmlReportParser.SourceFile> consumer) throws IOException {
+    if (packageName == null) {
+      skipAttributes(b);
+      throw new IllegalStateException("Invalid report: expected to find 'sourcefile' within a 'package' at line " + location());
+    }
+    String sourceFileName = readNameAttribute(b, "for a sourcefile at line ");
+    currentFile = new XmlReportParser.SourceFile(packageName, sourceFileName, groupName);
+    if (selfClosing) {
+      // A source file without lines, as written for the files of which no line holds code
+      consumer.accept(currentFile);
+      currentFile = null;
+    } else if (sourceFileFilter != null && !sourceFileFilter.test(currentFile)) {
+      skipToEndTag(SOURCEFILE);
+      consumer.accept(currentFile);
+      currentFile = null;
+    }
+  }
+
+  private void startLine(int b) throws IOException {
+    Arrays.fill(lineValues, 0);
+    Arrays.fill(lineValuePresent, false);
+    Arrays.fill(lineValueInvalid, false);
+    while ((b = nextAttribute(b)) != EOF) {
+      int index = lineAttributeIndex();
+      if (index == -1) {
+        b = skipValue(b);
+      } else {
+        b = readIntValue(b, index);
+      }
+    }
+    if (currentFile == null) {
+      throw new IllegalStateException("Invalid report: expected to find 'line' within a 'sourcefile' at line " + location());
+    }
+    for (int i = 0; i < LINE_ATTRIBUTES.length; i++) {
+      if (i == NR && !lineValuePresent[i]) {
+        throw new IllegalStateException("Invalid report: couldn't find the attribute '" + LINE_ATTRIBUTES[i] + "' " + lineErrorContext());
+      }
+      if (lineValueInvalid[i]) {
+        throw new IllegalStateException("Invalid report: failed to parse integer from the attribute '" + LINE_ATTRIBUTES[i] + "' " + lineErrorContext());
+      }
+    }
+    currentFile.addLine(lineValues[0], lineValues[1], lineValues[2], lineValues[3], lineValues[4]);
+  }
+
+  private String lineErrorContext() {
+    return "for the sourcefile '" + currentFile.name() + "' at line " + location();
+  }
+
+  private int lineAttributeIndex() {
+    if (nameLength != 2) {
+      return -1;
+    }
+    for (int i = 0; i < LINE_ATTRIBUTES.length; i++) {
+      String attribute = LINE_ATTRIBUTES[i];
+      if (name[0] == attribute.charAt(0) && name[1] == attribute.charAt(1)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Reads the required 'name' attribute of the current start tag, and consumes the tag.
+   */
+  private String readNameAttribute(int b, String errorContext) throws IOException {
+    String result = null;
+    while ((b = nextAttribute(b)) != EOF) {
+      if (result == null && nameIs(NAME)) {
+        b = readValue(b);
+        // Names are interned straight from their bytes, so that a name already met costs no allocation
+        result = valueNeedsDecoding ? names.intern(decodeValue()) : names.intern(nameProbe.set(value, valueLength));
+      } else {
+        b = skipValue(b);
+      }
+    }
+    if (result == null) {
+      throw new IllegalStateException("Invalid report: couldn't find the attribute 'name' " + errorContext + location());
+    }
+    return result;
+  }
+
+  private String location() {
+    long column = bufferOffset + position - lineStartOffset + 1;
+    return lineNumber + COLUMN + column;
+  }
+
+  // Low level scanning
+
+  private int read() throws IOException {
+    if (position == limit && !fill()) {
+      return EOF;
+    }
+    byte b = buffer.get(position++);
+    if (b == '\n') {
+      lineNumber++;
+      lineStartOffset = bufferOffset + position;
+    }
+    return b;
+  }
+
+  private boolean fill() throws IOException {
+    bufferOffset += limit;
+    position = 0;
+    limit = 0;
+    ByteBuffer next = input.next();
+    if (next == null) {
+      return false;
+    }
+    buffer = next;
+    limit = next.limit();
+    return true;
+  }
+
+  private int readRequired() throws IOException {
+    int b = read();
+    if (b == EOF) {
+      throw new EOFException("Unexpected end of report within a tag");
+    }
+    return b;
+  }
+
+  private boolean skipPast(char expected) throws IOException {
+    // Hot loop, working on the buffer directly rather than byte per byte through read()
+    while (true) {
+      for (int i = position; i < limit; i++) {
+        byte b = buffer.get(i);
+        if (b == expected) {
+          position = i + 1;
+          return true;
+        } else if (b == '\n') {
+          lineNumber++;
+          lineStartOffset = bufferOffset + i + 1;
+        }
+      }
+      position = limit;
+      if (!fill()) {
+        return false;
+      }
+    }
+  }
+
+  private void skipPast(byte[] terminator) throws IOException {
+    // Terminators are only a few bytes long, so comparing the last bytes read against them after every byte is cheap enough
+    int[] recent = new int[terminator.length];
+    Arrays.fill(recent, EOF);
+    long count = 0;
+    while (true) {
+      recent[(int) (count % recent.length)] = readRequired();
+      count++;
+      if (endsWith(recent, count, terminator)) {
+        return;
+      }
+    }
+  }
+
+  private static boolean endsWith(int[] recent, long count, byte[] terminator) {
+    for (int i = 0; i < terminator.length; i++) {
+      if (recent[(int) ((count + i) % recent.length)] != terminator[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Skips comments, CDATA sections and the DOCTYPE declaration, the leading "<!" being already consumed.
+   */
+  private void skipMarkupDeclaration() throws IOException {
+    int b = readRequired();
+    if (b == '-') {
+      readRequired();
+      skipPast(COMMENT_END);
+    } else if (b == '[') {
+      skipPast(CDATA_END);
+    } else {
+      int quote = 0;
+      int brackets = 0;
+      while (true) {
+        if (quote != 0) {
+          if (b == quote) {
+            quote = 0;
+          }
+        } else if (b == '"' || b == '\'') {
+          quote = b;
+        } else if (b == '[') {
+          brackets++;
+        } else if (b == ']') {
+          brackets--;
+        } else if (b == '>' && brackets <= 0) {
+          return;
+        }
+        b = readRequired();
+      }
+    }
+  }
+
+  /**
+   * Reads an element or attribute name starting with the given byte, and returns the first byte following it.
+   */
+  private int readName(int firstByte) throws IOException {
+    nameLength = 0;
+    int b = firstByte;
+    while (b != '>' && b != '/' && b != '=' && !isWhitespace(b)) {
+      if (b == EOF) {
+        throw new EOFException("Unexpected end of report within a tag");
+      }
+      if (nameLength == name.length) {
+        name = Arrays.copyOf(name, name.length * 2);
+      }
+      name[nameLength++] = (byte) b;
+      b = read();
+    }
+    return b;
+  }
+
+  private boolean nameIs(byte[] expected) {
+    return nameLength == expected.length && Arrays.equals(name, 0, nameLength, expected, 0, expected.length);
+  }
+
+  /**
+   * Moves to the next attribute of the current tag, starting from the given byte, and reads its name.
+   *
+   * @return the opening quote of the attribute value, or {@link #EOF} once the end of the tag has been consumed
+   */
+  private int nextAttribute(int b) throws IOException {
+    while (isWhitespace(b)) {
+      b = readRequired();
+    }
+    if (b == '>') {
+      selfClosing = false;
+      return EOF;
+    }
+    if (b == '/') {
+      if (readRequired() != '>') {
+        throw new IOException("Malformed tag at line " + location());
+      }
+      selfClosing = true;
+      return EOF;
+    }
+    b = readName(b);
+    while (isWhitespace(b)) {
+      b = readRequired();
+    }
+    if (b != '=') {
+      throw new IOException("Malformed attribute at line " + location());
+    }
+    b = readRequired();
+    while (isWhitespace(b)) {
+      b = readRequired();
+    }
+    if (b != '"' && b != '\'') {
+      throw new IOException("Malformed attribute value at line " + location());
+    }
+    return b;
+  }
+
+  private void skipAttributes(int b) throws IOException {
+    while ((b = nextAttribute(b)) != EOF) {
+      b = skipValue(b);
+    }
+  }
+
+  /**
+   * Skips an attribute value delimited by the given quote, and returns the byte following the closing quote.
+   */
+  private int skipValue(int quote) throws IOException {
+    int b;
+    do {
+      b = readRequired();
+    } while (b != quote);
+    return readRequired();
+  }
+
+  /**
+   * Copies the raw bytes of an attribute value delimited by the given quote, and returns the byte following the closing quote.
+   */
+  private int readValue(int quote) throws IOException {
+    valueLength = 0;
+    valueNeedsDecoding = false;
+    int b = readRequired();
+    while (b != quote) {
+      appendValueByte(b);
+      b = readRequired();
+    }
+    return readRequired();
+  }
+
+  private void appendValueByte(int b) {
+    if (valueLength == value.length) {
+      value = Arrays.copyOf(value, value.length * 2);
+    }
+    value[valueLength++] = (byte) b;
+    if (b == '&' || b == '\t' || b == '\n' || b == '\r') {
+      valueNeedsDecoding = true;
+    }
+  }
+
+  /**
+   * Decodes the digits of an attribute value straight into an int. Values which are not plain decimal numbers,
+   * such as values using character references, fall back to {@link Integer#parseInt(String)} on the decoded value.
+   */
+  private int readIntValue(int quote, int index) throws IOException {
+    lineValuePresent[index] = true;
+    valueLength = 0;
+    valueNeedsDecoding = false;
+    int result = 0;
+    boolean plainDigits = true;
+    int b = readRequired();
+    while (b != quote) {
+      appendValueByte(b);
+      if (plainDigits) {
+        int digit = b - '0';
+        if (digit >= 0 && digit <= 9 && result <= (Integer.MAX_VALUE - digit) / 10) {
+          result = result * 10 + digit;
+        } else {
+          plainDigits = false;
+        }
+      }
+      b = readRequired();
+    }
+    if (plainDigits && valueLength > 0) {
+      lineValues[index] = result;
+    } else {
+      try {
+        lineValues[index] = Integer.parseInt(decodeValue());
+      } catch (NumberFormatException e) {
+        lineValueInvalid[index] = true;
+      }
+    }
+    return readRequired();
+  }
+
+  private String decodeValue() throws IOException {
+    String raw = new String(value, 0, valueLength, StandardCharsets.UTF_8);
+    if (!valueNeedsDecoding) {
+      return raw;
+    }
+    StringBuilder decoded = new StringBuilder(raw.length());
+    for (int i = 0; i < raw.length(); i++) {
+      char c = raw.charAt(i);
+      if (c == '\r' && i + 1 < raw.length() && raw.charAt(i + 1) == '\n') {
+        // Line breaks are normalized before attribute values, so CRLF is a single whitespace
+        continue;
+      }
+      if (c == '\t' || c == '\n' || c == '\r') {
+        decoded.append(' ');
+      } else if (c == '&') {
+        int end = raw.indexOf(';', i);
+        if (end == -1) {
+          throw new IOException("Malformed entity reference in attribute value at line " + location());
+        }
+        decoded.append(decodeEntity(raw.substring(i + 1, end)));
+        i = end;
+      } else {
+        decoded.append(c);
+      }
+    }
+    return decoded.toString();
+  }
+
+  private String decodeEntity(String entity) throws IOException {
+    switch (entity) {
+      case "lt":
+        return "<";
+      case "gt":
+        return ">";
+      case "amp":
+        return "&";
+      case "quot":
+        return "\"";
+      case "apos":
+        return "'";
+      default:
+        return decodeCharacterReference(entity);
+    }
+  }
+
+  private String decodeCharacterReference(String entity) throws IOException {
+    try {
+      if (entity.startsWith("#x")) {
+        return new String(Character.toChars(Integer.parseInt(entity.substring(2), 16)));
+      } else if (entity.startsWith("#")) {
+        return new String(Character.toChars(Integer.parseInt(entity.substring(1))));
+      }
+    } catch (IllegalArgumentException e) {
+      // reported below
+    }
+    throw new IOException("Unsupported entity reference '&" + entity + ";' at line " + location());
+  }
+
+  /**
+   * The bytes of a 'package' element within a report, from its start tag to its end tag included.
+   */
+  static final class PackageRange {
+    final long start;
+    long end;
+    @Nullable
+    final String groupName;
+    final String packageName;
+    final int lineNumber;
+    final long lineStartOffset;
+
+    PackageRange(long start, @Nullable String groupName, String packageName, int lineNumber, long lineStartOffset) {
+      this.start = start;
+      this.groupName = groupName;
+      this.packageName = packageName;
+      this.lineNumber = lineNumber;
+      this.lineStartOffset = lineStartOffset;
+    }
+
+    long length() {
+      return end - start;
+    }
+  }
+
+  private static boolean isWhitespace(int b) {
+    return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.sonar.api.utils.WildcardPattern;
+
+/**
+ * Reports stored compressed: gzip files, named '*.gz', and entries of zip archives, designated as 'archive.zip!/path/to/report.xml'.
+ * Both are decompressed on the fly while being read, without writing any temporary file.
+ */
+final class CompressedReports {
+  static final String ARCHIVE_SEPARATOR = "!/";
+
+  private static final String GZIP_EXTENSION = ".gz";
+  private static final String[] ARCHIVE_EXTENSIONS = {".zip", ".jar"};
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private CompressedReports() {
+    // utility class
+  }
+
+  static boolean isCompressed(Path path) {
+    return isGzip(path.toString()) || archiveNameIndex(path) != -1;
+  }
+
+  /**
+   * @return the index of the '!' separating the archive from the entry in the given unix-like path, or -1 when it does not designate an entry
+   */
+  static int indexOfArchiveSeparator(String unixLikePath) {
+    String lowerCasePath = unixLikePath.toLowerCase(Locale.ENGLISH);
+    int index = lowerCasePath.indexOf(ARCHIVE_SEPARATOR);
+    while (index != -1) {
+      for (String extension : ARCHIVE_EXTENSIONS) {
+        if (lowerCasePath.startsWith(extension, index - extension.length())) {
+          return index;
+        }
+      }
+      index = lowerCasePath.indexOf(ARCHIVE_SEPARATOR, index + 1);
+    }
+    return -1;
+  }
+
+  static InputStream open(Path path) throws IOException {
+    int archiveNameIndex = archiveNameIndex(path);
+    if (archiveNameIndex != -1) {
+      return openEntry(path, archiveNameIndex);
+    }
+    return decompressIfGzip(Files.newInputStream(path), path.toString());
+  }
+
+  /**
+   * @return the paths designating the entries of the archive matching the given pattern
+   */
+  static List<Path> entries(Path archive, String entryPattern) throws IOException {
+    WildcardPattern matcher = WildcardPattern.create(entryPattern);
+    try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+      return zipFile.stream()
+        .filter(entry -> !entry.isDirectory() && matcher.match(entry.getName()))
+        .map(entry -> archive.resolveSibling(archive.getFileName() + "!").resolve(entry.getName()))
+        .collect(Collectors.toList());
+    }
+  }
+
+  private static InputStream openEntry(Path path, int archiveNameIndex) throws IOException {
+    Path archivePath = path.subpath(0, archiveNameIndex + 1);
+    if (path.getRoot() != null) {
+      archivePath = path.getRoot().resolve(archivePath);
+    }
+    String archiveName = archivePath.getFileName().toString();
+    archivePath = archivePath.resolveSibling(archiveName.substring(0, archiveName.length() - 1));
+    String entryName = path.subpath(archiveNameIndex + 1, path.getNameCount()).toString().replace(path.getFileSystem().getSeparator(), "/");
+
+    ZipFile zipFile = new ZipFile(archivePath.toFile());
+    try {
+      ZipEntry entry = zipFile.getEntry(entryName);
+      if (entry == null || entry.isDirectory()) {
+        throw new NoSuchFileException(path.toString());
+      }
+      InputStream input = new FilterInputStream(zipFile.getInputStream(entry)) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            zipFile.close();
+          }
+        }
+      };
+      return decompressIfGzip(input, entryName);
+    } catch (IOException | RuntimeException e) {
+      zipFile.close();
+      throw e;
+    }
+  }
+
+  private static InputStream decompressIfGzip(InputStream input, String name) throws IOException {
+    if (!isGzip(name)) {
+      return input;
+    }
+    try {
+      return new GZIPInputStream(input, BUFFER_SIZE);
+    } catch (IOException | RuntimeException e) {
+      input.close();
+      throw e;
+    }
+  }
+
+  private static boolean isGzip(String name) {
+    return name.toLowerCase(Locale.ENGLISH).endsWith(GZIP_EXTENSION);
+  }
+
+  /**
+   * @return the index of the name element of the archive, the one ending with '.zip!', when the path designates an entry of an archive, -1 otherwise
+   */
+  private static int archiveNameIndex(Path path) {
+    // The last element is the name of the entry itself, so it can't designate an archive
+    for (int i = 0; i < path.getNameCount() - 1; i++) {
+      String name = path.getName(i).toString().toLowerCase(Locale.ENGLISH);
+      for (String extension : ARCHIVE_EXTENSIONS) {
+        if (name.endsWith(extension + "!")) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.util.Arrays;
+import org.sonar.api.batch.sensor.coverage.NewCoverage;
+
+/**
+ * Coverage of one file accumulated across several reports. A line is covered when any report covers it, while the number of
+ * conditions and of covered conditions are the maximum of all reports, as the scanner merges them.
+ * <p>
+ * The coverable and covered lines are kept in {@link LineSet}s, and the few lines with conditions in a sorted table, so that merging
+ * hundreds of reports of the same files costs a few bytes per line.
+ */
+class CoverageAccumulator {
+  private static final int BRANCH_FIELDS = 3;
+  private static final int[] NO_BRANCHES = new int[0];
+
+  private final LineSet coverableLines = new LineSet();
+  private final LineSet coveredLines = new LineSet();
+  /**
+   * Lines with conditions, packed as consecutive (line, conditions, covered conditions) tuples sorted by line.
+   */
+  private int[] branches = NO_BRANCHES;
+  private int branchCount;
+
+  void add(XmlReportParser.SourceFile sourceFile) {
+    sourceFile.forEachLine((number, missedInstrs, coveredInstrs, missedBranches, coveredBranches) -> {
+      boolean hasConditions = coveredBranches > 0 || missedBranches > 0;
+      if (!hasConditions && coveredInstrs == 0 && missedInstrs == 0) {
+        return;
+      }
+      coverableLines.add(number);
+      if (coveredInstrs > 0) {
+        coveredLines.add(number);
+      }
+      if (hasConditions) {
+        addBranches(number, coveredBranches + missedBranches, coveredBranches);
+      }
+    });
+  }
+
+  private void addBranches(int line, int conditions, int coveredConditions) {
+    // Reports list the lines in ascending order, so that lines are usually appended
+    int index = branchCount == 0 || branches[(branchCount - 1) * BRANCH_FIELDS] < line ? branchCount : branchIndex(line);
+    int offset = index * BRANCH_FIELDS;
+    if (index < branchCount && branches[offset] == line) {
+      branches[offset + 1] = Math.max(branches[offset + 1], conditions);
+      branches[offset + 2] = Math.max(branches[offset + 2], coveredConditions);
+      return;
+    }
+    if (branchCount * BRANCH_FIELDS == branches.length) {
+      branches = Arrays.copyOf(branches, Math.max(4 * BRANCH_FIELDS, branches.length * 2));
+    }
+    System.arraycopy(branches, offset, branches, offset + BRANCH_FIELDS, (branchCount - index) * BRANCH_FIELDS);
+    branches[offset] = line;
+    branches[offset + 1] = conditions;
+    branches[offset + 2] = coveredConditions;
+    branchCount++;
+  }
+
+  /**
+   * @return the index of the tuple of the given line, or of the first tuple of a greater line
+   */
+  private int branchIndex(int line) {
+    int low = 0;
+    int high = branchCount;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (branches[middle * BRANCH_FIELDS] < line) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  void saveTo(NewCoverage newCoverage) {
+    int branch = 0;
+    for (int line : coverableLines.toArray()) {
+      while (branch < branchCount && branches[branch * BRANCH_FIELDS] < line) {
+        branch++;
+      }
+      int offset = branch * BRANCH_FIELDS;
+      if (branch < branchCount && branches[offset] == line) {
+        newCoverage.conditions(line, branches[offset + 1], branches[offset + 2]);
+      }
+      newCoverage.lineHits(line, coveredLines.contains(line) ? 1 : 0);
+    }
+    newCoverage.save();
+  }
+}
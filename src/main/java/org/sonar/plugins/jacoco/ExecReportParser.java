@@ -0,0 +1,263 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.tools.ExecFileLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes the coverage of source files directly from JaCoCo execution data files (*.exec) and the compiled classes they were
+ * recorded against, like the 'report' goal of JaCoCo does, without writing and reading back an XML report.
+ * <p>
+ * The class files are analyzed on several threads, each one with its own {@link CoverageBuilder}. Since the classes of one source file
+ * may then end up in different builders, the coverage of the classes is summed per source file afterwards, which is what JaCoCo
+ * does when it builds the source file nodes of its reports.
+ */
+class ExecReportParser {
+  private static final Logger LOG = LoggerFactory.getLogger(ExecReportParser.class);
+  private static final String CLASS_FILE_SUFFIX = ".class";
+  private static final int MAX_CLASS_FILES_PER_BATCH = 256;
+  private static final int BATCHES_PER_THREAD = 4;
+
+  private final ExecFileLoader loader = new ExecFileLoader();
+  private final Collection<Path> classDirectories;
+  private final int threads;
+  private final NameTable names;
+
+  ExecReportParser(Collection<Path> classDirectories, int threads, NameTable names) {
+    this.classDirectories = classDirectories;
+    this.threads = Math.max(1, threads);
+    this.names = names;
+  }
+
+  /**
+   * Merges the execution data of the given file with the data of the files loaded before.
+   */
+  void load(Path execPath) throws IOException {
+    loader.load(execPath.toFile());
+  }
+
+  void parse(Consumer<XmlReportParser.SourceFile> consumer) throws IOException {
+    ExecutionDataStore executionData = loader.getExecutionDataStore();
+    Map<String, IClassCoverage> classes = new HashMap<>();
+    for (CoverageBuilder builder : analyze(executionData)) {
+      for (IClassCoverage classCoverage : builder.getClasses()) {
+        IClassCoverage previous = classes.putIfAbsent(classCoverage.getName(), classCoverage);
+        if (previous != null && previous.getId() != classCoverage.getId()) {
+          throw new IllegalStateException("Can't add different class with same name: " + classCoverage.getName());
+        }
+      }
+    }
+
+    Map<String, SourceFileCounters> sourceFiles = new HashMap<>();
+    classes.values().stream()
+      // Classes compiled without debug information can't be matched to the lines of a source file
+      .filter(classCoverage -> classCoverage.getSourceFileName() != null && classCoverage.getFirstLine() != ISourceNode.UNKNOWN_LINE)
+      .forEach(classCoverage -> sourceFiles
+        .computeIfAbsent(classCoverage.getPackageName() + '/' + classCoverage.getSourceFileName(),
+          key -> new SourceFileCounters(classCoverage.getPackageName(), classCoverage.getSourceFileName()))
+        .add(classCoverage));
+
+    sourceFiles.values().stream()
+      .sorted(Comparator.comparing((SourceFileCounters file) -> file.packageName).thenComparing(file -> file.name))
+      .forEach(file -> consumer.accept(file.toSourceFile(names)));
+  }
+
+  /**
+   * Analyzes the class files in batches submitted to a pool of threads, each thread filling its own builder, since builders
+   * aren't thread-safe. The execution data is only read once loaded, so it is shared by all the analyzers.
+   */
+  private Collection<CoverageBuilder> analyze(ExecutionDataStore executionData) throws IOException {
+    List<List<Path>> batches = batches(classFiles());
+    if (threads == 1 || batches.size() <= 1) {
+      CoverageBuilder builder = new CoverageBuilder();
+      Analyzer analyzer = new Analyzer(executionData, builder);
+      for (List<Path> batch : batches) {
+        analyzeAll(analyzer, batch);
+      }
+      return List.of(builder);
+    }
+
+    ThreadLocal<CoverageBuilder> threadBuilders = new ThreadLocal<>();
+    Collection<CoverageBuilder> builders = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, batches.size()), runnable -> {
+      Thread thread = new Thread(runnable, "jacoco-class-analysis");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (List<Path> batch : batches) {
+        futures.add(executor.submit(() -> {
+          CoverageBuilder builder = threadBuilders.get();
+          if (builder == null) {
+            builder = new CoverageBuilder();
+            threadBuilders.set(builder);
+            synchronized (builders) {
+              builders.add(builder);
+            }
+          }
+          analyzeAll(new Analyzer(executionData, builder), batch);
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        await(future);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return builders;
+  }
+
+  private static void await(Future<?> future) throws IOException {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while analyzing class files", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  private static void analyzeAll(Analyzer analyzer, List<Path> classFiles) throws IOException {
+    for (Path classFile : classFiles) {
+      try (InputStream input = Files.newInputStream(classFile)) {
+        analyzer.analyzeClass(input, classFile.toString());
+      }
+    }
+  }
+
+  private List<Path> classFiles() throws IOException {
+    List<Path> classFiles = new ArrayList<>();
+    for (Path directory : classDirectories) {
+      if (!Files.isDirectory(directory)) {
+        LOG.debug("Class directory '{}' does not exist", directory);
+        continue;
+      }
+      try (Stream<Path> files = Files.walk(directory)) {
+        classFiles.addAll(files
+          .filter(file -> file.getFileName().toString().endsWith(CLASS_FILE_SUFFIX) && Files.isRegularFile(file))
+          .collect(Collectors.toList()));
+      }
+    }
+    return classFiles;
+  }
+
+  /**
+   * Splits the class files into several batches per thread, so that threads finishing early can take over the remaining batches.
+   */
+  private List<List<Path>> batches(List<Path> classFiles) {
+    int batchSize = Math.max(1, Math.min(MAX_CLASS_FILES_PER_BATCH, -Math.floorDiv(-classFiles.size(), threads * BATCHES_PER_THREAD)));
+    List<List<Path>> batches = new ArrayList<>();
+    for (int start = 0; start < classFiles.size(); start += batchSize) {
+      batches.add(classFiles.subList(start, Math.min(classFiles.size(), start + batchSize)));
+    }
+    return batches;
+  }
+
+  /**
+   * Sums the counters of the lines of all the classes compiled from one source file.
+   */
+  private static class SourceFileCounters {
+    private static final int COUNTERS = 4;
+
+    private final String packageName;
+    private final String name;
+    private int firstLine = Integer.MAX_VALUE;
+    private int lastLine = -1;
+    /**
+     * Missed and covered instructions, missed and covered branches, for each line from 0 to the last line.
+     */
+    private int[] counters = new int[0];
+
+    SourceFileCounters(String packageName, String name) {
+      this.packageName = packageName;
+      this.name = name;
+    }
+
+    void add(IClassCoverage classCoverage) {
+      int first = classCoverage.getFirstLine();
+      int last = classCoverage.getLastLine();
+      if ((last + 1) * COUNTERS > counters.length) {
+        int[] grown = new int[(last + 1) * COUNTERS];
+        System.arraycopy(counters, 0, grown, 0, counters.length);
+        counters = grown;
+      }
+      firstLine = Math.min(firstLine, first);
+      lastLine = Math.max(lastLine, last);
+      for (int nr = first; nr <= last; nr++) {
+        ILine line = classCoverage.getLine(nr);
+        ICounter instructions = line.getInstructionCounter();
+        ICounter branches = line.getBranchCounter();
+        int offset = nr * COUNTERS;
+        counters[offset] += instructions.getMissedCount();
+        counters[offset + 1] += instructions.getCoveredCount();
+        counters[offset + 2] += branches.getMissedCount();
+        counters[offset + 3] += branches.getCoveredCount();
+      }
+    }
+
+    XmlReportParser.SourceFile toSourceFile(NameTable names) {
+      XmlReportParser.SourceFile sourceFile = new XmlReportParser.SourceFile(names.intern(packageName), names.intern(name));
+      for (int nr = firstLine; nr <= lastLine; nr++) {
+        int offset = nr * COUNTERS;
+        // Like in the XML reports, only the lines holding instructions are reported
+        if (counters[offset] + counters[offset + 1] > 0) {
+          sourceFile.addLine(nr, counters[offset], counters[offset + 1], counters[offset + 2], counters[offset + 3]);
+        }
+      }
+      return sourceFile;
+    }
+  }
+}
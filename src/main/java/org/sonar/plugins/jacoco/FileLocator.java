@@ -21,39 +21,84 @@ package org.sonar.plugins.jacoco;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import org.slf4j.Logger;
 import org.sonar.api.batch.fs.InputFile;
 
 public abstract class FileLocator {
   public static final String SEPARATOR_REGEX = Pattern.quote(File.separator);
 
-  protected final ReversePathTree tree = new ReversePathTree();
+  protected final ReversePathTree tree;
   protected final KotlinFileLocator kotlinFileLocator;
+  private static final ThreadLocal<LookupKey> PROBE = ThreadLocal.withInitial(LookupKey::new);
+
+  private final Map<LookupKey, Optional<InputFile>> lookups = new ConcurrentHashMap<>();
 
   protected FileLocator(Iterable<InputFile> inputFiles, KotlinFileLocator kotlinFileLocator) {
     this(StreamSupport.stream(inputFiles.spliterator(), false).collect(Collectors.toList()), kotlinFileLocator);
   }
 
   protected FileLocator(List<InputFile> inputFiles, @Nullable KotlinFileLocator kotlinFileLocator) {
-    this.kotlinFileLocator = kotlinFileLocator;
+    this(new ReversePathTree(), kotlinFileLocator);
     for (InputFile inputFile : inputFiles) {
-      // InputFile.relativePath() always uses '/' as separator
-      String[] path = inputFile.relativePath().split("/");
-      tree.index(inputFile, path);
+      tree.index(inputFile, splitPath(inputFile));
     }
   }
 
+  /**
+   * Looks up the files of an index which is already built.
+   */
+  protected FileLocator(ReversePathTree tree, @Nullable KotlinFileLocator kotlinFileLocator) {
+    this.tree = tree;
+    this.kotlinFileLocator = kotlinFileLocator;
+  }
+
+  static String[] splitPath(InputFile inputFile) {
+    // InputFile.relativePath() always uses '/' as separator
+    return inputFile.relativePath().split("/");
+  }
+
+  /**
+   * Logs how many of the indexed files can only be told apart by their directories, which are the slowest to look up.
+   */
+  void logIndexStatistics(Logger logger) {
+    logger.debug("Indexed {} file(s), of which {} share their name with other files", tree.fileCount(), tree.filesWithSharedName());
+  }
+
+  /**
+   * @return the names of the indexed files accepted by the filter, which all the files found by the lookups are named after
+   */
+  Set<String> fileNames(Predicate<InputFile> filter) {
+    return tree.fileNames(filter);
+  }
+
+  /**
+   * The result of the lookup is memoized, as the same source file is usually found in several reports.
+   */
   @CheckForNull
   public InputFile getInputFile(@Nullable String groupName, String packagePath, String fileName) {
-    String filePath = packagePath.isEmpty()
-            ? fileName
-            : normalizePath(packagePath + "/" + fileName);
+    // Looking up a file already met allocates nothing
+    Optional<InputFile> located = lookups.get(PROBE.get().set(groupName, packagePath, fileName));
+    if (located == null) {
+      located = Optional.ofNullable(locate(groupName, packagePath, fileName));
+      lookups.putIfAbsent(new LookupKey().set(groupName, packagePath, fileName), located);
+    }
+    return located.orElse(null);
+  }
 
-    InputFile file = lookup(groupName, filePath);
+  @CheckForNull
+  private InputFile locate(@Nullable String groupName, String packagePath, String fileName) {
+    InputFile file = lookup(groupName, packagePath, fileName);
 
     if (file == null && fileName.endsWith(".kt")) {
       file = kotlinFileLocator.getInputFile(packagePath, fileName);
@@ -61,11 +106,53 @@ public abstract class FileLocator {
     return file;
   }
 
+  /**
+   * Looks up the file 'packagePath/fileName', the package path being empty for the default package.
+   */
   @CheckForNull
-  protected abstract InputFile lookup(@Nullable String groupName, String filePath);
+  protected abstract InputFile lookup(@Nullable String groupName, String packagePath, String fileName);
+
+  /**
+   * @return the path of the file with the separators of the file system
+   */
+  protected static String filePath(String packagePath, String fileName) {
+    return packagePath.isEmpty() ? fileName : (packagePath + "/" + fileName).replace("/", File.separator);
+  }
+
+  /**
+   * A key of the memoized lookups, which can also be used as a reusable probe.
+   */
+  private static final class LookupKey {
+    @Nullable
+    private String groupName;
+    private String packagePath;
+    private String fileName;
+    private int hash;
 
-  private static String normalizePath(String path) {
-    return path.replace("/", File.separator);
+    private LookupKey set(@Nullable String groupName, String packagePath, String fileName) {
+      this.groupName = groupName;
+      this.packagePath = packagePath;
+      this.fileName = fileName;
+      this.hash = 31 * (31 * Objects.hashCode(groupName) + packagePath.hashCode()) + fileName.hashCode();
+      return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof LookupKey)) {
+        return false;
+      }
+      LookupKey other = (LookupKey) o;
+      return fileName.equals(other.fileName) && packagePath.equals(other.packagePath) && Objects.equals(groupName, other.groupName);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
   }
 
 }
@@ -0,0 +1,334 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Predicate;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.config.Configuration;
+
+/**
+ * Settings tuning how the reports are read and imported, resolved once per sensor execution.
+ */
+class ImportSettings {
+  private static final Logger LOG = LoggerFactory.getLogger(ImportSettings.class);
+
+  static final String PARSER_PROPERTY_KEY = "sonar.coverage.jacoco.xmlParser";
+  static final String PARSER_THREADS_PROPERTY_KEY = "sonar.coverage.jacoco.xmlParserThreads";
+  static final String IMPORT_THREADS_PROPERTY_KEY = "sonar.coverage.jacoco.importThreads";
+  static final String CHANGED_FILES_ONLY_PROPERTY_KEY = "sonar.coverage.jacoco.changedFilesOnly";
+  static final String STREAMING_MERGE_PROPERTY_KEY = "sonar.coverage.jacoco.streamingMerge";
+  static final String REPORT_CACHE_SIZE_PROPERTY_KEY = "sonar.coverage.jacoco.reportCacheSize";
+  static final String INDEX_ALL_FILES_PROPERTY_KEY = "sonar.coverage.jacoco.indexAllFiles";
+  static final String REPORT_SLICING_PROPERTY_KEY = "sonar.coverage.jacoco.reportSlicing";
+  private static final long BYTES_PER_MB = 1024L * 1024L;
+  private static final long MAX_DEFAULT_REPORT_CACHE_BYTES = 256 * BYTES_PER_MB;
+
+  enum Parser {
+    /**
+     * The generic StAX implementation provided by the JDK.
+     */
+    STAX,
+    /**
+     * The dedicated JaCoCo report scanner working on raw bytes, see {@link ByteXmlReportScanner}.
+     */
+    BYTES
+  }
+
+  private Parser parser = Parser.STAX;
+  private int parserThreads = defaultThreads();
+  private int importThreads = 1;
+  private StaxFactory staxFactory = new StaxFactory();
+  private boolean changedFilesOnly = false;
+  private boolean streamingMerge = false;
+  private long reportCacheBytes = defaultReportCacheBytes();
+  private boolean indexAllFiles = false;
+  private boolean reportSlicing = false;
+  @Nullable
+  private ReportCache reportCache;
+  @Nullable
+  private AnalysisReportCache analysisCache;
+  @Nullable
+  private ReportIndex.Cache reportIndexes;
+  @Nullable
+  private Predicate<String> packageFilter;
+  @Nullable
+  private Predicate<XmlReportParser.SourceFile> sourceFileFilter;
+
+  static ImportSettings defaults() {
+    return new ImportSettings();
+  }
+
+  static ImportSettings from(Configuration config) {
+    return new ImportSettings()
+      .setParser(parser(config.get(PARSER_PROPERTY_KEY)))
+      .setParserThreads(threads(config.get(PARSER_THREADS_PROPERTY_KEY), PARSER_THREADS_PROPERTY_KEY, defaultThreads()))
+      .setImportThreads(threads(config.get(IMPORT_THREADS_PROPERTY_KEY), IMPORT_THREADS_PROPERTY_KEY, 1))
+      .setChangedFilesOnly(bool(config.get(CHANGED_FILES_ONLY_PROPERTY_KEY)))
+      .setStreamingMerge(bool(config.get(STREAMING_MERGE_PROPERTY_KEY)))
+      .setReportCacheBytes(reportCacheBytes(config.get(REPORT_CACHE_SIZE_PROPERTY_KEY)))
+      .setIndexAllFiles(bool(config.get(INDEX_ALL_FILES_PROPERTY_KEY)))
+      .setReportSlicing(bool(config.get(REPORT_SLICING_PROPERTY_KEY)));
+  }
+
+  private static long reportCacheBytes(Optional<String> value) {
+    if (value.isEmpty()) {
+      return defaultReportCacheBytes();
+    }
+    try {
+      return Math.max(0, Long.parseLong(value.get().trim())) * BYTES_PER_MB;
+    } catch (NumberFormatException e) {
+      LOG.warn("Invalid value '{}' for '{}', falling back to {}", value.get(), REPORT_CACHE_SIZE_PROPERTY_KEY, defaultReportCacheBytes() / BYTES_PER_MB);
+      return defaultReportCacheBytes();
+    }
+  }
+
+  private static long defaultReportCacheBytes() {
+    return Math.min(MAX_DEFAULT_REPORT_CACHE_BYTES, Runtime.getRuntime().maxMemory() / 4);
+  }
+
+  private static boolean bool(Optional<String> value) {
+    return value.map(String::trim).map(Boolean::parseBoolean).orElse(false);
+  }
+
+  private static Parser parser(Optional<String> value) {
+    if (value.isEmpty()) {
+      return Parser.STAX;
+    }
+    try {
+      return Parser.valueOf(value.get().trim().toUpperCase(Locale.ENGLISH));
+    } catch (IllegalArgumentException e) {
+      LOG.warn("Unknown value '{}' for '{}', falling back to 'stax'", value.get(), PARSER_PROPERTY_KEY);
+      return Parser.STAX;
+    }
+  }
+
+  private static int threads(Optional<String> value, String key, int defaultValue) {
+    if (value.isEmpty()) {
+      return defaultValue;
+    }
+    try {
+      return Math.max(1, Integer.parseInt(value.get().trim()));
+    } catch (NumberFormatException e) {
+      LOG.warn("Invalid value '{}' for '{}', falling back to {}", value.get(), key, defaultValue);
+      return defaultValue;
+    }
+  }
+
+  private static int defaultThreads() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  Parser parser() {
+    return parser;
+  }
+
+  ImportSettings setParser(Parser parser) {
+    this.parser = parser;
+    return this;
+  }
+
+  /**
+   * @return the number of threads a single large report is parsed with, when using the {@link Parser#BYTES} parser
+   */
+  int parserThreads() {
+    return parserThreads;
+  }
+
+  ImportSettings setParserThreads(int parserThreads) {
+    this.parserThreads = parserThreads;
+    return this;
+  }
+
+  /**
+   * @return the number of reports parsed concurrently, 1 by default, which imports the reports one after the other
+   */
+  int importThreads() {
+    return importThreads;
+  }
+
+  ImportSettings setImportThreads(int importThreads) {
+    this.importThreads = importThreads;
+    return this;
+  }
+
+  /**
+   * @return the factory of the StAX parser, shared by all the reports of the sensor execution
+   */
+  StaxFactory staxFactory() {
+    return staxFactory;
+  }
+
+  ImportSettings setStaxFactory(StaxFactory staxFactory) {
+    this.staxFactory = staxFactory;
+    return this;
+  }
+
+  /**
+   * @return whether the coverage of the files whose status is {@link org.sonar.api.batch.fs.InputFile.Status#SAME} is left out,
+   * which is all that the analysis of a pull request needs
+   */
+  boolean changedFilesOnly() {
+    return changedFilesOnly;
+  }
+
+  ImportSettings setChangedFilesOnly(boolean changedFilesOnly) {
+    this.changedFilesOnly = changedFilesOnly;
+    return this;
+  }
+
+  /**
+   * @return whether all the files of the analysis are indexed for the lookups of the files of the reports, rather than only the
+   * {@link JvmSourceFiles}
+   */
+  boolean indexAllFiles() {
+    return indexAllFiles;
+  }
+
+  ImportSettings setIndexAllFiles(boolean indexAllFiles) {
+    this.indexAllFiles = indexAllFiles;
+    return this;
+  }
+
+  /**
+   * @return whether the large reports shared by the modules are only parsed for the packages of the module, see {@link ReportIndex},
+   * which only applies to the {@link Parser#BYTES} parser
+   */
+  boolean reportSlicing() {
+    return reportSlicing;
+  }
+
+  ImportSettings setReportSlicing(boolean reportSlicing) {
+    this.reportSlicing = reportSlicing;
+    return this;
+  }
+
+  /**
+   * @return whether several reports are read in lockstep by a {@link StreamingReportMerger}, rather than one after the other
+   */
+  boolean streamingMerge() {
+    return streamingMerge;
+  }
+
+  ImportSettings setStreamingMerge(boolean streamingMerge) {
+    this.streamingMerge = streamingMerge;
+    return this;
+  }
+
+  /**
+   * @return the memory budget of the cache of parsed reports, in bytes
+   */
+  long reportCacheBytes() {
+    return reportCacheBytes;
+  }
+
+  ImportSettings setReportCacheBytes(long reportCacheBytes) {
+    this.reportCacheBytes = reportCacheBytes;
+    return this;
+  }
+
+  /**
+   * @return the cache of parsed reports shared by the sensors of all the modules, if any
+   */
+  @CheckForNull
+  ReportCache reportCache() {
+    return reportCache;
+  }
+
+  ImportSettings setReportCache(@Nullable ReportCache reportCache) {
+    this.reportCache = reportCache;
+    return this;
+  }
+
+  /**
+   * @return the cache of the binary form of the reports, kept from one analysis to the next, if enabled
+   */
+  @CheckForNull
+  AnalysisReportCache analysisCache() {
+    return analysisCache;
+  }
+
+  ImportSettings setAnalysisCache(@Nullable AnalysisReportCache analysisCache) {
+    this.analysisCache = analysisCache;
+    return this;
+  }
+
+  /**
+   * @return the indexes of the packages of the reports shared by the sensors of all the modules, if any
+   */
+  @CheckForNull
+  ReportIndex.Cache reportIndexes() {
+    return reportIndexes;
+  }
+
+  ImportSettings setReportIndexes(@Nullable ReportIndex.Cache reportIndexes) {
+    this.reportIndexes = reportIndexes;
+    return this;
+  }
+
+  /**
+   * @return the packages of the reports which may contain files of the module, if only those need to be parsed
+   */
+  @CheckForNull
+  Predicate<String> packageFilter() {
+    return packageFilter;
+  }
+
+  ImportSettings setPackageFilter(@Nullable Predicate<String> packageFilter) {
+    this.packageFilter = packageFilter;
+    return this;
+  }
+
+  /**
+   * @return the source files whose lines need to be read from the reports, as soon as their names are known, if not all of them. The
+   * filter is called by the threads parsing the reports.
+   */
+  @CheckForNull
+  Predicate<XmlReportParser.SourceFile> sourceFileFilter() {
+    return sourceFileFilter;
+  }
+
+  ImportSettings setSourceFileFilter(@Nullable Predicate<XmlReportParser.SourceFile> sourceFileFilter) {
+    this.sourceFileFilter = sourceFileFilter;
+    return this;
+  }
+
+  ImportSettings copy() {
+    return new ImportSettings()
+      .setParser(parser)
+      .setParserThreads(parserThreads)
+      .setImportThreads(importThreads)
+      .setStaxFactory(staxFactory)
+      .setChangedFilesOnly(changedFilesOnly)
+      .setStreamingMerge(streamingMerge)
+      .setReportCacheBytes(reportCacheBytes)
+      .setIndexAllFiles(indexAllFiles)
+      .setReportSlicing(reportSlicing)
+      .setReportCache(reportCache)
+      .setAnalysisCache(analysisCache)
+      .setReportIndexes(reportIndexes)
+      .setPackageFilter(packageFilter)
+      .setSourceFileFilter(sourceFileFilter);
+  }
+}
@@ -57,11 +57,27 @@ public class JacocoAggregateSensor implements ProjectSensor {
       LOG.debug("No aggregate XML report found. No coverage coverage information will be added at project level.");
       return;
     }
-    Iterable<InputFile> inputFiles = context.fileSystem().inputFiles(context.fileSystem().predicates().all());
+    ImportSettings settings = ImportSettings.from(context.config());
+    Iterable<InputFile> inputFiles = JvmSourceFiles.of(context.fileSystem(), settings.indexAllFiles());
     Stream<InputFile> kotlinInputFileStream = StreamSupport.stream(inputFiles.spliterator(), false).filter(f -> "kotlin".equals(f.language()));
-    FileLocator locator = new ProjectFileLocator(inputFiles, new KotlinFileLocator(kotlinInputFileStream), projectCoverageContext);
-    ReportImporter importer = new ReportImporter(context);
+    KotlinFileLocator kotlinFileLocator = new KotlinFileLocator(kotlinInputFileStream);
+    // The files are only indexed again when some of them were not added by the sensors of the modules
+    ProjectFileIndex fileIndex = projectCoverageContext.getFileIndex();
+    FileLocator locator = fileIndex.covers(inputFiles)
+      ? new ProjectFileLocator(fileIndex, kotlinFileLocator, projectCoverageContext)
+      : new ProjectFileLocator(inputFiles, kotlinFileLocator, projectCoverageContext);
+    locator.logIndexStatistics(LOG);
+    projectCoverageContext.getReportCache().setMaxBytes(settings.reportCacheBytes());
+    settings.setReportCache(projectCoverageContext.getReportCache());
+    if (context.isCacheEnabled()) {
+      settings.setAnalysisCache(new AnalysisReportCache(context.previousCache(), context.nextCache()));
+    }
+    ReportImporter importer = new ReportImporter(context, settings.changedFilesOnly(), !settings.streamingMerge() && reportPaths.size() > 1);
 
-    importReports(reportPaths, locator, importer, LOG, analysisWarnings);
+    importReports(reportPaths, locator, importer, LOG, analysisWarnings, settings);
+    importer.saveMerged();
+    if (settings.changedFilesOnly()) {
+      LOG.info("Coverage of {} unchanged file(s) was not imported", importer.skippedFiles());
+    }
   }
 }
@@ -20,6 +20,7 @@
 package org.sonar.plugins.jacoco;
 
 import org.sonar.api.Plugin;
+import org.sonar.api.PropertyType;
 import org.sonar.api.config.PropertyDefinition;
 
 public class JacocoPlugin implements Plugin {
@@ -32,7 +33,8 @@ public class JacocoPlugin implements Plugin {
       .multiValues(true)
       .category("JaCoCo")
       .description("Paths to JaCoCo XML coverage report files. Each path can be either absolute or relative" +
-        " to the project base directory. Wildcard patterns are accepted (*, ** and ?).")
+        " to the project base directory. Wildcard patterns are accepted (*, ** and ?). Gzip compressed reports (*.gz)" +
+        " and reports within zip archives (archive.zip!/path/to/report.xml) are read as well.")
       .build());
 
     context.addExtension(JacocoAggregateSensor.class);
@@ -41,7 +43,90 @@ public class JacocoPlugin implements Plugin {
       .multiValues(true)
       .category("JaCoCo")
       .description("Paths to JaCoCo XML aggregate coverage report files. Each path can be either absolute or relative" +
-              " to the project base directory. Wildcard patterns are accepted (*, ** and ?).")
+              " to the project base directory. Wildcard patterns are accepted (*, ** and ?). Gzip compressed reports (*.gz)" +
+              " and reports within zip archives (archive.zip!/path/to/report.xml) are read as well.")
+      .build());
+
+    context.addExtension(PropertyDefinition.builder(ImportSettings.PARSER_PROPERTY_KEY)
+      .onConfigScopes(PropertyDefinition.ConfigScope.PROJECT)
+      .type(PropertyType.SINGLE_SELECT_LIST)
+      .options("stax", "bytes")
+      .defaultValue("stax")
+      .category("JaCoCo")
+      .description("Parser used to read JaCoCo XML reports: 'stax' for the generic XML parser of the JDK, or 'bytes' for a dedicated" +
+        " parser working directly on the bytes of the report, which is faster on large reports.")
+      .build());
+
+    context.addExtension(PropertyDefinition.builder(ImportSettings.PARSER_THREADS_PROPERTY_KEY)
+      .onConfigScopes(PropertyDefinition.ConfigScope.PROJECT)
+      .type(PropertyType.INTEGER)
+      .category("JaCoCo")
+      .description("Number of threads used to parse each large JaCoCo XML report with the 'bytes' parser." +
+        " Defaults to the number of available processors, 1 disables parallel parsing.")
+      .build());
+
+    context.addExtension(PropertyDefinition.builder(ImportSettings.IMPORT_THREADS_PROPERTY_KEY)
+      .onConfigScopes(PropertyDefinition.ConfigScope.PROJECT)
+      .type(PropertyType.INTEGER)
+      .defaultValue("1")
+      .category("JaCoCo")
+      .description("Number of JaCoCo XML reports parsed concurrently when several reports are imported, their files still being imported" +
+        " one at a time. Defaults to 1, which imports the reports one after the other.")
+      .build());
+
+    context.addExtension(PropertyDefinition.builder(ReportPathsProvider.EXEC_REPORT_PATHS_PROPERTY_KEY)
+      .onConfigScopes(PropertyDefinition.ConfigScope.PROJECT)
+      .multiValues(true)
+      .category("JaCoCo")
+      .description("Paths to JaCoCo execution data files (*.exec), read without generating XML reports. Each path can be either absolute" +
+        " or relative to the project base directory. Wildcard patterns are accepted (*, ** and ?). The coverage is computed by analyzing" +
+        " the compiled classes of the directories set by sonar.java.binaries.")
+      .build());
+
+    context.addExtension(PropertyDefinition.builder(ImportSettings.CHANGED_FILES_ONLY_PROPERTY_KEY)
+      .onConfigScopes(PropertyDefinition.ConfigScope.PROJECT)
+      .type(PropertyType.BOOLEAN)
+      .defaultValue("false")
+      .category("JaCoCo")
+      .description("Import the coverage of changed files only, leaving out the files whose status is SAME. Pull request analyses only" +
+        " need the coverage of new code, so that import time becomes proportional to the size of the change.")
+      .build());
+
+    context.addExtension(PropertyDefinition.builder(ImportSettings.STREAMING_MERGE_PROPERTY_KEY)
+      .onConfigScopes(PropertyDefinition.ConfigScope.PROJECT)
+      .type(PropertyType.BOOLEAN)
+      .defaultValue("false")
+      .category("JaCoCo")
+      .description("Read all the JaCoCo XML reports in lockstep, merging the coverage of each source file as soon as all the reports" +
+        " are past it. Meant for the many reports of the shards of a test suite, whose memory is then bound by the number of reports.")
+      .build());
+
+    context.addExtension(PropertyDefinition.builder(ImportSettings.REPORT_CACHE_SIZE_PROPERTY_KEY)
+      .onConfigScopes(PropertyDefinition.ConfigScope.PROJECT)
+      .type(PropertyType.INTEGER)
+      .category("JaCoCo")
+      .description("Memory budget, in MB, of the reports kept parsed for the other modules of the project, so that a report shared by" +
+        " several modules is parsed in full once, when a second module reads it, and reused by the other modules. Defaults to a quarter" +
+        " of the maximum heap, up to 256 MB. 0 disables the cache.")
+      .build());
+
+    context.addExtension(PropertyDefinition.builder(ImportSettings.INDEX_ALL_FILES_PROPERTY_KEY)
+      .onConfigScopes(PropertyDefinition.ConfigScope.PROJECT)
+      .type(PropertyType.BOOLEAN)
+      .defaultValue("false")
+      .category("JaCoCo")
+      .description("Look up the files of the JaCoCo reports among all the files of the analysis, rather than only among the sources of the" +
+        " JVM languages (Java, Kotlin, Scala, Groovy, Gosu, Clojure, Xtend and AspectJ files).")
+      .build());
+
+    context.addExtension(PropertyDefinition.builder(ImportSettings.REPORT_SLICING_PROPERTY_KEY)
+      .onConfigScopes(PropertyDefinition.ConfigScope.PROJECT)
+      .type(PropertyType.BOOLEAN)
+      .defaultValue("false")
+      .category("JaCoCo")
+      .description("Parse only the packages which may contain files of the module from the large uncompressed JaCoCo XML reports shared" +
+        " by the modules of the project, using an index of the packages of each report built once for all the modules. Only applies to" +
+        " the 'bytes' parser.")
       .build());
   }
 }
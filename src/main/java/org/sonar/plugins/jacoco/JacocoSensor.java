@@ -21,6 +21,8 @@ package org.sonar.plugins.jacoco;
 
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import org.slf4j.Logger;
@@ -31,6 +33,7 @@ import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.notifications.AnalysisWarnings;
 
+import static org.sonar.plugins.jacoco.SensorUtils.importExecReports;
 import static org.sonar.plugins.jacoco.SensorUtils.importReports;
 
 public class JacocoSensor implements Sensor {
@@ -51,23 +54,77 @@ public class JacocoSensor implements Sensor {
 
   @Override
   public void execute(SensorContext context) {
-    recordModuleCoverageContext(context);
-    Collection<Path> reportPaths = new ReportPathsProvider(context, analysisWarnings).getPaths();
-    if (reportPaths.isEmpty()) {
+    ModuleCoverageContext moduleContext = recordModuleCoverageContext(context);
+    ReportPathsProvider reportPathsProvider = new ReportPathsProvider(context, analysisWarnings);
+    Collection<Path> reportPaths = reportPathsProvider.getPaths();
+    Collection<Path> execPaths = reportPathsProvider.getExecPaths();
+    ImportSettings settings = ImportSettings.from(context.config());
+    // When the coverage is also imported at project level, the files of the module are added to the index of the project, so that the
+    // aggregate sensor does not index them again
+    boolean aggregated = context.config().hasKey(ReportPathsProvider.AGGREGATE_REPORT_PATHS_PROPERTY_KEY);
+    if (reportPaths.isEmpty() && execPaths.isEmpty()) {
+      if (aggregated) {
+        // The files are only listed when the project index needs them
+        List<InputFile> inputFiles = toList(JvmSourceFiles.of(context.fileSystem(), settings.indexAllFiles()));
+        projectCoverageContext.getFileIndex().addModule(moduleContext, inputFiles, null);
+      }
       LOG.info("No report imported, no coverage information will be imported by JaCoCo XML Report Importer");
       return;
     }
-    Iterable<InputFile> inputFiles = context.fileSystem().inputFiles(context.fileSystem().predicates().all());
+    Iterable<InputFile> inputFiles = JvmSourceFiles.of(context.fileSystem(), settings.indexAllFiles());
     Stream<InputFile> kotlinInputFileStream = StreamSupport.stream(inputFiles.spliterator(), false).filter(f -> "kotlin".equals(f.language()));
-    ModuleFileLocator locator = new ModuleFileLocator(inputFiles, new KotlinFileLocator(kotlinInputFileStream));
-    ReportImporter importer = new ReportImporter(context);
+    KotlinFileLocator kotlinFileLocator = new KotlinFileLocator(kotlinInputFileStream);
+    ModuleFileLocator locator = aggregated
+      ? new ModuleFileLocator(inputFiles, kotlinFileLocator, projectCoverageContext.getFileIndex(), moduleContext)
+      : new ModuleFileLocator(inputFiles, kotlinFileLocator);
+    locator.logIndexStatistics(LOG);
+    projectCoverageContext.getReportCache().setMaxBytes(settings.reportCacheBytes());
+    settings.setReportCache(projectCoverageContext.getReportCache());
+    if (settings.reportSlicing()) {
+      // Large reports shared by the modules are only parsed for the packages in which the files of the module can be found
+      settings.setReportIndexes(projectCoverageContext.getReportIndexes());
+      settings.setPackageFilter(ModulePackages.of(inputFiles));
+    }
+    if (context.isCacheEnabled()) {
+      settings.setAnalysisCache(new AnalysisReportCache(context.previousCache(), context.nextCache()));
+    }
+    // Files appearing in several reports are saved once, with the coverage of all the reports, unless the reports are already merged
+    // while being read
+    boolean mergeReports = !settings.streamingMerge() && reportPaths.size() + (execPaths.isEmpty() ? 0 : 1) > 1;
+    ReportImporter importer = new ReportImporter(context, settings.changedFilesOnly(), mergeReports);
 
-    importReports(reportPaths, locator, importer, LOG, analysisWarnings);
+    if (!reportPaths.isEmpty()) {
+      importReports(reportPaths, locator, importer, LOG, analysisWarnings, settings);
+    }
+    if (!execPaths.isEmpty()) {
+      importExecData(execPaths, reportPathsProvider.getClassDirectories(), locator, importer, settings);
+    }
+    importer.saveMerged();
+    if (settings.changedFilesOnly()) {
+      LOG.info("Coverage of {} unchanged file(s) was not imported", importer.skippedFiles());
+    }
   }
 
-  private void recordModuleCoverageContext(SensorContext sensorContext) {
+  private void importExecData(Collection<Path> execPaths, Collection<Path> classDirectories, FileLocator locator, ReportImporter importer,
+    ImportSettings settings) {
+    if (classDirectories.isEmpty()) {
+      String message = String.format("Execution data can't be imported without the compiled classes, '%s' doesn't point to any existing directory",
+        ReportPathsProvider.CLASS_DIRECTORIES_PROPERTY_KEY);
+      LOG.warn(message);
+      analysisWarnings.addUnique(message);
+      return;
+    }
+    importExecReports(execPaths, classDirectories, locator, importer, LOG, analysisWarnings, settings);
+  }
+
+  private ModuleCoverageContext recordModuleCoverageContext(SensorContext sensorContext) {
     var moduleCoverageContext = ModuleCoverageContext.from(sensorContext);
     this.projectCoverageContext.add(moduleCoverageContext);
     LOG.debug("Recorded module coverage context for aggregation: {}", moduleCoverageContext);
+    return moduleCoverageContext;
+  }
+
+  private static List<InputFile> toList(Iterable<InputFile> inputFiles) {
+    return StreamSupport.stream(inputFiles.spliterator(), false).collect(Collectors.toList());
   }
 }
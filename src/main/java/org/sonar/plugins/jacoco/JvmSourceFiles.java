@@ -0,0 +1,57 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.util.Locale;
+import java.util.Set;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+
+/**
+ * The files which can be found in JaCoCo reports, which only cover the sources of the languages compiled to JVM bytecode.
+ */
+final class JvmSourceFiles {
+
+  static final Set<String> LANGUAGES = Set.of("java", "kotlin", "scala", "groovy", "gosu");
+  /**
+   * The extensions of the sources of the JVM languages, which can be covered even when no plugin of the analysis assigns them a language.
+   */
+  static final Set<String> EXTENSIONS = Set.of("java", "kt", "kts", "scala", "sc", "groovy", "gvy", "gy", "gsh", "gs", "gsx", "gst", "gsp",
+    "clj", "cljc", "xtend", "aj");
+
+  private JvmSourceFiles() {
+  }
+
+  /**
+   * @return the files to index for the lookups of the files of the reports: only the JVM sources, unless all the files are indexed
+   */
+  static Iterable<InputFile> of(FileSystem fileSystem, boolean allFiles) {
+    return fileSystem.inputFiles(allFiles ? fileSystem.predicates().all() : JvmSourceFiles::isJvmSource);
+  }
+
+  static boolean isJvmSource(InputFile inputFile) {
+    if (inputFile.language() != null && LANGUAGES.contains(inputFile.language())) {
+      return true;
+    }
+    String filename = inputFile.filename();
+    int dot = filename.lastIndexOf('.');
+    return dot >= 0 && EXTENSIONS.contains(filename.substring(dot + 1).toLowerCase(Locale.ENGLISH));
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.util.Arrays;
+
+/**
+ * Set of line numbers, stored either as a sorted array of the lines, or as a bitmap of all the lines up to the last one, whichever
+ * takes less memory, like the array and bitmap containers of Roaring bitmaps. A file either has a few scattered lines in a set, which
+ * the array keeps to a few bytes, or most of its lines, which the bitmap keeps to one bit per line.
+ */
+class LineSet {
+  private static final int[] NO_LINES = new int[0];
+
+  /**
+   * The sorted lines of the set, until it is turned into a bitmap.
+   */
+  private int[] lines = NO_LINES;
+  private long[] words;
+  private int size;
+
+  void add(int line) {
+    if (words != null) {
+      if (setBit(line)) {
+        size++;
+      }
+      return;
+    }
+    int index = size == 0 || lines[size - 1] < line ? -(size + 1) : Arrays.binarySearch(lines, 0, size, line);
+    if (index >= 0) {
+      return;
+    }
+    int maxLine = size == 0 ? line : Math.max(line, lines[size - 1]);
+    if ((size + 1) * (long) Integer.BYTES > wordsFor(maxLine) * (long) Long.BYTES) {
+      toBitmap(maxLine);
+      setBit(line);
+      size++;
+      return;
+    }
+    int insertion = -(index + 1);
+    if (size == lines.length) {
+      lines = Arrays.copyOf(lines, Math.max(8, size + (size >> 1)));
+    }
+    System.arraycopy(lines, insertion, lines, insertion + 1, size - insertion);
+    lines[insertion] = line;
+    size++;
+  }
+
+  boolean contains(int line) {
+    if (words != null) {
+      int word = line >>> 6;
+      return word < words.length && (words[word] & (1L << line)) != 0;
+    }
+    return Arrays.binarySearch(lines, 0, size, line) >= 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return the lines of the set, in ascending order
+   */
+  int[] toArray() {
+    if (words == null) {
+      return Arrays.copyOf(lines, size);
+    }
+    int[] result = new int[size];
+    int count = 0;
+    for (int word = 0; word < words.length; word++) {
+      long bits = words[word];
+      while (bits != 0) {
+        result[count++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+      }
+    }
+    return result;
+  }
+
+  private void toBitmap(int maxLine) {
+    words = new long[wordsFor(maxLine)];
+    for (int i = 0; i < size; i++) {
+      setBit(lines[i]);
+    }
+    lines = NO_LINES;
+  }
+
+  /**
+   * @return whether the line wasn't in the set yet
+   */
+  private boolean setBit(int line) {
+    int word = line >>> 6;
+    if (word >= words.length) {
+      words = Arrays.copyOf(words, Math.max(word + 1, words.length + (words.length >> 1)));
+    }
+    long mask = 1L << line;
+    boolean added = (words[word] & mask) == 0;
+    words[word] |= mask;
+    return added;
+  }
+
+  private static int wordsFor(int maxLine) {
+    return (maxLine >>> 6) + 1;
+  }
+}
@@ -30,6 +30,15 @@ public class ModuleFileLocator extends FileLocator {
     super(StreamSupport.stream(inputFiles.spliterator(), false).collect(Collectors.toList()), kotlinFileLocator);
   }
 
+  /**
+   * Indexes the files of the module while adding them to the index of the project, the lookups remaining restricted to the module.
+   */
+  ModuleFileLocator(Iterable<InputFile> inputFiles, KotlinFileLocator kotlinFileLocator, ProjectFileIndex projectFileIndex,
+    ModuleCoverageContext module) {
+    super(new ReversePathTree(), kotlinFileLocator);
+    projectFileIndex.addModule(module, StreamSupport.stream(inputFiles.spliterator(), false).collect(Collectors.toList()), tree);
+  }
+
   /**
    * Convenience method to {@link FileLocator#getInputFile(String, String, String)}, visible for testing.
    */
@@ -41,7 +50,7 @@ public class ModuleFileLocator extends FileLocator {
   /**
    * Looks up a file in the indexed file tree, discarding the information about the group/subproject name.
    */
-  public InputFile lookup(@Nullable String unusedGroupName, String filePath) {
-    return tree.getFileWithSuffix(filePath.split(FileLocator.SEPARATOR_REGEX));
+  public InputFile lookup(@Nullable String unusedGroupName, String packagePath, String fileName) {
+    return tree.getFileWithSuffix(packagePath, fileName);
   }
 }
@@ -0,0 +1,71 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.sonar.api.batch.fs.InputFile;
+
+/**
+ * The packages of a report in which a {@link ModuleFileLocator} may find files of the module: the file path 'package/File.java' is
+ * looked up as a suffix of the relative paths of the files, so only the packages which are a suffix of the directory of a file can match.
+ * Kotlin files are also looked up by their package declaration, wherever they are, so no package is filtered out in modules with Kotlin files.
+ */
+class ModulePackages implements Predicate<String> {
+  private final Set<String> directorySuffixes = new HashSet<>();
+
+  private ModulePackages() {
+  }
+
+  static Predicate<String> of(Iterable<InputFile> inputFiles) {
+    ModulePackages packages = new ModulePackages();
+    for (InputFile inputFile : inputFiles) {
+      if ("kotlin".equals(inputFile.language()) || inputFile.filename().endsWith(".kt")) {
+        return packageName -> true;
+      }
+      packages.addDirectorySuffixes(inputFile.relativePath());
+    }
+    return packages;
+  }
+
+  private void addDirectorySuffixes(String relativePath) {
+    // InputFile.relativePath() always uses '/' as separator
+    int end = relativePath.lastIndexOf('/');
+    if (end <= 0) {
+      return;
+    }
+    String directory = relativePath.substring(0, end);
+    int start = 0;
+    while (directorySuffixes.add(directory.substring(start))) {
+      int separator = directory.indexOf('/', start);
+      if (separator < 0) {
+        return;
+      }
+      start = separator + 1;
+    }
+    // Otherwise the shorter suffixes were already added with a directory ending the same way
+  }
+
+  @Override
+  public boolean test(String packageName) {
+    return packageName.isEmpty() || directorySuffixes.contains(packageName);
+  }
+}
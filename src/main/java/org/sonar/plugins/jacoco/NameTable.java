@@ -0,0 +1,101 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns the group, package and source file names read from reports, so that the source files sharing a name, typically the same
+ * source file covered by several reports, share a single String instance. A table is shared by all the reports of a sensor execution,
+ * and can be used by several parsers concurrently.
+ */
+class NameTable {
+  private final ConcurrentMap<String, String> names = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Utf8Name, String> namesByBytes = new ConcurrentHashMap<>();
+
+  String intern(String name) {
+    String existing = names.putIfAbsent(name, name);
+    return existing == null ? name : existing;
+  }
+
+  /**
+   * Interns the name held by the given probe, only decoding it to a String the first time the name is met.
+   * The probe is not retained, so it can be reused by the caller.
+   */
+  String intern(Utf8Name probe) {
+    String name = namesByBytes.get(probe);
+    if (name == null) {
+      name = intern(new String(probe.bytes, 0, probe.length, StandardCharsets.UTF_8));
+      namesByBytes.putIfAbsent(probe.copy(), name);
+    }
+    return name;
+  }
+
+  int size() {
+    return names.size();
+  }
+
+  /**
+   * The UTF-8 bytes of a name, compared by content.
+   */
+  static final class Utf8Name {
+    private byte[] bytes;
+    private int length;
+    private int hash;
+
+    /**
+     * Points the probe to the first bytes of the given array, without copying them.
+     */
+    Utf8Name set(byte[] bytes, int length) {
+      this.bytes = bytes;
+      this.length = length;
+      int h = 1;
+      for (int i = 0; i < length; i++) {
+        h = 31 * h + bytes[i];
+      }
+      this.hash = h;
+      return this;
+    }
+
+    private Utf8Name copy() {
+      return new Utf8Name().set(Arrays.copyOf(bytes, length), length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Utf8Name)) {
+        return false;
+      }
+      Utf8Name other = (Utf8Name) o;
+      return hash == other.hash && Arrays.equals(bytes, 0, length, other.bytes, 0, other.length);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
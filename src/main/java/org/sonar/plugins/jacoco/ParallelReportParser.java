@@ -0,0 +1,169 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+
+/**
+ * Parses a single report on several threads.
+ * <p>
+ * A JaCoCo report is a flat list of 'package' elements, optionally within 'group' elements. The report is first scanned for the byte
+ * ranges of its packages, which is much cheaper than parsing them, and batches of consecutive packages are then parsed in parallel,
+ * each from its own mapping of the report. Source files are handed over to the consumer on the calling thread, in the order of the report.
+ * At most a few batches per thread are parsed ahead of the consumer, which bounds the memory held by parsed but not yet consumed files.
+ */
+class ParallelReportParser {
+  static final long PARALLEL_THRESHOLD = ReportInput.MAPPING_THRESHOLD;
+  private static final long MIN_BATCH_SIZE = 1024L * 1024;
+  private static final long MAX_BATCH_SIZE = 8L * 1024 * 1024;
+  private static final int BATCHES_PER_THREAD = 4;
+
+  private final Path path;
+  private final int threads;
+  private final NameTable names;
+  @Nullable
+  private final Predicate<XmlReportParser.SourceFile> sourceFileFilter;
+
+  ParallelReportParser(Path path, int threads, NameTable names) {
+    this(path, threads, names, null);
+  }
+
+  ParallelReportParser(Path path, int threads, NameTable names, @Nullable Predicate<XmlReportParser.SourceFile> sourceFileFilter) {
+    this.path = path;
+    this.threads = threads;
+    this.names = names;
+    this.sourceFileFilter = sourceFileFilter;
+  }
+
+  void parse(Consumer<XmlReportParser.SourceFile> consumer) throws IOException {
+    List<ByteXmlReportScanner.PackageRange> ranges;
+    try (ReportInput input = ReportInput.open(path)) {
+      ranges = new ByteXmlReportScanner(input, names).scanPackageRanges();
+    }
+    List<List<ByteXmlReportScanner.PackageRange>> batches = batches(ranges, threads);
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      Deque<Future<List<XmlReportParser.SourceFile>>> inFlight = new ArrayDeque<>();
+      int next = 0;
+      while (next < batches.size() || !inFlight.isEmpty()) {
+        while (next < batches.size() && inFlight.size() < threads * BATCHES_PER_THREAD) {
+          List<ByteXmlReportScanner.PackageRange> batch = batches.get(next++);
+          inFlight.add(pool.submit(() -> parseBatch(batch)));
+        }
+        awaitResult(inFlight.poll()).forEach(consumer);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Groups consecutive packages in batches big enough for the cost of setting up their parsing to be negligible,
+   * and small enough for the work to be evenly spread among the threads.
+   */
+  static List<List<ByteXmlReportScanner.PackageRange>> batches(List<ByteXmlReportScanner.PackageRange> ranges, int threads) {
+    long total = 0;
+    for (ByteXmlReportScanner.PackageRange range : ranges) {
+      total += range.length();
+    }
+    long targetSize = Math.max(MIN_BATCH_SIZE, Math.min(MAX_BATCH_SIZE, total / ((long) threads * BATCHES_PER_THREAD)));
+
+    List<List<ByteXmlReportScanner.PackageRange>> batches = new ArrayList<>();
+    List<ByteXmlReportScanner.PackageRange> batch = new ArrayList<>();
+    long batchSize = 0;
+    for (ByteXmlReportScanner.PackageRange range : ranges) {
+      batch.add(range);
+      batchSize += range.length();
+      if (batchSize >= targetSize) {
+        batches.add(batch);
+        batch = new ArrayList<>();
+        batchSize = 0;
+      }
+    }
+    if (!batch.isEmpty()) {
+      batches.add(batch);
+    }
+    return batches;
+  }
+
+  /**
+   * Parses the bytes spanning from the first package of the batch to the end of the last one. What lies between packages,
+   * such as the boundaries of groups, is parsed as well, so that each package is parsed in the same context as in the whole report.
+   */
+  private List<XmlReportParser.SourceFile> parseBatch(List<ByteXmlReportScanner.PackageRange> batch) throws IOException {
+    List<XmlReportParser.SourceFile> sourceFiles = new ArrayList<>();
+    scanRanges(path, batch, names, sourceFileFilter, sourceFiles::add);
+    return sourceFiles;
+  }
+
+  /**
+   * Scans consecutive packages of the report, from their own mapping of the report.
+   */
+  static void scanRanges(Path path, List<ByteXmlReportScanner.PackageRange> consecutiveRanges, NameTable names,
+    @Nullable Predicate<XmlReportParser.SourceFile> sourceFileFilter, Consumer<XmlReportParser.SourceFile> consumer) throws IOException {
+    ByteXmlReportScanner.PackageRange first = consecutiveRanges.get(0);
+    long end = consecutiveRanges.get(consecutiveRanges.size() - 1).end;
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    ReportInput input;
+    try {
+      input = new ReportInput.Mapped(channel, first.start, end, ReportInput.WINDOW_SIZE);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    try (input) {
+      new ByteXmlReportScanner(input, names, first).setSourceFileFilter(sourceFileFilter).scan(consumer);
+    }
+  }
+
+  private static List<XmlReportParser.SourceFile> awaitResult(Future<List<XmlReportParser.SourceFile>> result) throws IOException {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while parsing the report", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause.getCause() != null && cause.getCause().getClass() == cause.getClass()) {
+        // The pool rethrows a copy of the exception of the task, with the stack of the waiting thread, wrapping the original one
+        cause = cause.getCause();
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+}
@@ -30,6 +30,12 @@ public class ProjectCoverageContext {
 
   private List<ModuleCoverageContext> moduleContexts = new ArrayList<>();
 
+  private final ReportCache reportCache = new ReportCache(0);
+
+  private final ReportIndex.Cache reportIndexes = new ReportIndex.Cache();
+
+  private final ProjectFileIndex fileIndex = new ProjectFileIndex();
+
   public List<ModuleCoverageContext> getModuleContexts() {
     return moduleContexts;
   }
@@ -46,4 +52,25 @@ public class ProjectCoverageContext {
   public void setProjectBaseDir(Path projectBaseDir) {
     this.projectBaseDir = projectBaseDir;
   }
+
+  /**
+   * @return the source files parsed from reports, shared by the sensors of all the modules
+   */
+  ReportCache getReportCache() {
+    return reportCache;
+  }
+
+  /**
+   * @return the indexes of the packages of large reports, shared by the sensors of all the modules
+   */
+  ReportIndex.Cache getReportIndexes() {
+    return reportIndexes;
+  }
+
+  /**
+   * @return the index of the files of the project, to which the sensors of the modules add their files
+   */
+  ProjectFileIndex getFileIndex() {
+    return fileIndex;
+  }
 }
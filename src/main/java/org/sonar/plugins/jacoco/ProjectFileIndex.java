@@ -0,0 +1,72 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+
+/**
+ * The index of the files of the whole project, to which the sensor of each module adds the files of its module, so that the aggregate
+ * sensor does not have to index all the files of the project again.
+ */
+class ProjectFileIndex {
+
+  private final ReversePathTree tree = new ReversePathTree();
+  private final Set<ModuleCoverageContext> modules = new HashSet<>();
+  private int indexedFiles;
+
+  /**
+   * Indexes the files of a module, each path being split once for both the module and the project. The files of a module are only added
+   * to the project index the first time they are met.
+   *
+   * @param moduleTree the index of the module, or null when the module has nothing to look up
+   */
+  synchronized void addModule(ModuleCoverageContext module, List<InputFile> inputFiles, @Nullable ReversePathTree moduleTree) {
+    boolean newModule = modules.add(module);
+    for (InputFile inputFile : inputFiles) {
+      String[] path = FileLocator.splitPath(inputFile);
+      if (moduleTree != null) {
+        moduleTree.index(inputFile, path);
+      }
+      if (newModule) {
+        tree.index(inputFile, path);
+        indexedFiles++;
+      }
+    }
+  }
+
+  /**
+   * @return whether all the files of the project were added by the sensors of the modules
+   */
+  synchronized boolean covers(Iterable<InputFile> projectFiles) {
+    int projectFileCount = 0;
+    for (InputFile ignored : projectFiles) {
+      projectFileCount++;
+    }
+    return projectFileCount > 0 && projectFileCount == indexedFiles;
+  }
+
+  ReversePathTree tree() {
+    return tree;
+  }
+}
@@ -40,6 +40,14 @@ public class ProjectFileLocator extends FileLocator {
     this.projectCoverageContext = projectCoverageContext;
   }
 
+  /**
+   * Looks up the files of the index of the project built by the sensors of the modules.
+   */
+  ProjectFileLocator(ProjectFileIndex projectFileIndex, KotlinFileLocator kotlinFileLocator, ProjectCoverageContext projectCoverageContext) {
+    super(projectFileIndex.tree(), kotlinFileLocator);
+    this.projectCoverageContext = projectCoverageContext;
+  }
+
   /**
    * Looks up an input file up the indexed file tree.
    * When a group name (aka module/subproject name) is provided AND project coverage context has been set,
@@ -47,22 +55,22 @@ public class ProjectFileLocator extends FileLocator {
    * Otherwise, the lookup is done under the assumption that the input file should be looked up at module level.
    */
   @Override
-  public InputFile lookup(@Nullable String groupName, String filePath) {
-    return getInputFileForProject(groupName, filePath);
+  public InputFile lookup(@Nullable String groupName, String packagePath, String fileName) {
+    return getInputFileForProject(groupName, packagePath, fileName);
   }
 
   @CheckForNull
-  private InputFile getInputFileForProject(@Nullable String groupName, String filePath) {
-    String[] pathSegments = filePath.split(FileLocator.SEPARATOR_REGEX);
+  private InputFile getInputFileForProject(@Nullable String groupName, String packagePath, String fileName) {
     // Without a group name we cannot disambiguate between sub-projects, so fall back to a group-agnostic lookup (same behavior as ModuleFileLocator).
     if (groupName == null) {
-      return tree.getFileWithSuffix(pathSegments);
+      return tree.getFileWithSuffix(packagePath, fileName);
     }
     // First, try to look up the file in the tree using the computed path
-    InputFile file = tree.getFileWithSuffix(groupName, pathSegments);
+    InputFile file = tree.getFileWithSuffix(groupName, packagePath, fileName);
     if (file != null) {
       return file;
     }
+    String filePath = filePath(packagePath, fileName);
     // If the file cannot be found by looking up the tree, due for instance to ambiguities between sub-projects with similar structures,
     // then we must rebuild the path by identifying the correct sub-project, and building the path from its known sources
     return projectCoverageContext.getModuleContexts()
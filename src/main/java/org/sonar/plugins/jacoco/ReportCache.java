@@ -0,0 +1,232 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Source files parsed from reports, kept across the sensors of all the modules of a project, since the modules of multi-module builds
+ * often all point to the same aggregate report. Reports are identified by their real path, size and last modification time, so that
+ * a report rewritten during the analysis is parsed again.
+ * <p>
+ * A report is only kept once it is read by a second sensor, so that the reports read by a single module are still streamed, and only
+ * the source files needed by the module are decoded. The cache is bound by an estimate of the memory taken by the source files,
+ * evicting the least recently used reports first. A report which doesn't fit in the budget on its own is not cached.
+ */
+class ReportCache {
+  private static final Logger LOG = LoggerFactory.getLogger(ReportCache.class);
+  /**
+   * Rough size of a source file without its lines: the object, its array header and the references to its shared names.
+   */
+  private static final long SOURCE_FILE_OVERHEAD = 64;
+  private static final long BYTES_PER_LINE = 5L * Integer.BYTES;
+
+  private final Map<Key, CachedReport> reports = new LinkedHashMap<>(16, 0.75f, true);
+  private final Set<Key> readReports = new HashSet<>();
+  private long maxBytes;
+  private long usedBytes;
+
+  ReportCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Streams the source files of the report to the consumer, from the cache when the report was already parsed, or else with the
+   * given parser, keeping the parsed source files in the cache when they fit and the report was already read by another sensor.
+   */
+  void parse(Path reportPath, ReportParser parser, Consumer<XmlReportParser.SourceFile> consumer) {
+    Key key = Key.of(reportPath);
+    if (parseCached(key, reportPath, consumer)) {
+      return;
+    }
+    if (key == null || !isEnabled() || isFirstRead(key)) {
+      parser.parse(consumer, false);
+      return;
+    }
+
+    CachedReport parsed = new CachedReport();
+    parser.parse(sourceFile -> {
+      parsed.add(sourceFile, maxBytes);
+      consumer.accept(sourceFile);
+    }, true);
+    if (parsed.sourceFiles != null) {
+      put(key, parsed);
+    }
+  }
+
+  /**
+   * Streams the source files of the report to the consumer when the report is in the cache, without parsing it otherwise.
+   *
+   * @return whether the report was in the cache
+   */
+  boolean parseCached(Path reportPath, Consumer<XmlReportParser.SourceFile> consumer) {
+    return parseCached(Key.of(reportPath), reportPath, consumer);
+  }
+
+  private boolean parseCached(@Nullable Key key, Path reportPath, Consumer<XmlReportParser.SourceFile> consumer) {
+    CachedReport cached = key == null ? null : get(key);
+    if (cached == null) {
+      return false;
+    }
+    LOG.debug("Reusing the source files already parsed from report '{}'", reportPath);
+    cached.sourceFiles.forEach(consumer);
+    return true;
+  }
+
+  private synchronized boolean isFirstRead(Key key) {
+    return readReports.add(key);
+  }
+
+  @CheckForNull
+  private synchronized CachedReport get(Key key) {
+    return reports.get(key);
+  }
+
+  private synchronized void put(Key key, CachedReport report) {
+    CachedReport previous = reports.put(key, report);
+    if (previous != null) {
+      usedBytes -= previous.bytes;
+    }
+    usedBytes += report.bytes;
+    evict();
+  }
+
+  /**
+   * @return whether reports may be kept in the cache at all
+   */
+  synchronized boolean isEnabled() {
+    return maxBytes > 0;
+  }
+
+  /**
+   * Changes the memory budget, the last setting applying to the whole cache.
+   */
+  synchronized void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  private void evict() {
+    Iterator<CachedReport> leastRecentlyUsed = reports.values().iterator();
+    while (usedBytes > maxBytes && leastRecentlyUsed.hasNext()) {
+      usedBytes -= leastRecentlyUsed.next().bytes;
+      leastRecentlyUsed.remove();
+    }
+  }
+
+  synchronized int size() {
+    return reports.size();
+  }
+
+  synchronized long usedBytes() {
+    return usedBytes;
+  }
+
+  static long estimatedBytes(XmlReportParser.SourceFile sourceFile) {
+    return SOURCE_FILE_OVERHEAD + sourceFile.lineCount() * BYTES_PER_LINE;
+  }
+
+  @FunctionalInterface
+  interface ReportParser {
+    /**
+     * @param whole whether all the source files must be read with their lines, since they are kept for the other sensors
+     */
+    void parse(Consumer<XmlReportParser.SourceFile> consumer, boolean whole);
+  }
+
+  private static class CachedReport {
+    /**
+     * The source files of the report, or null once they don't fit in the budget.
+     */
+    private List<XmlReportParser.SourceFile> sourceFiles = new ArrayList<>();
+    private long bytes;
+
+    private void add(XmlReportParser.SourceFile sourceFile, long maxBytes) {
+      if (sourceFiles == null) {
+        return;
+      }
+      bytes += estimatedBytes(sourceFile);
+      if (bytes > maxBytes) {
+        sourceFiles = null;
+      } else {
+        sourceFiles.add(sourceFile);
+      }
+    }
+  }
+
+  /**
+   * Identifies the content of a report file by its real path, size and last modification time.
+   */
+  static final class Key {
+    private final Path realPath;
+    private final long size;
+    private final long lastModified;
+
+    private Key(Path realPath, long size, long lastModified) {
+      this.realPath = realPath;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+
+    /**
+     * @return the key of the report, or null when it isn't a regular file, such as the entries of archives
+     */
+    @CheckForNull
+    static Key of(Path reportPath) {
+      try {
+        Path realPath = reportPath.toRealPath();
+        BasicFileAttributes attributes = Files.readAttributes(realPath, BasicFileAttributes.class);
+        return new Key(realPath, attributes.size(), attributes.lastModifiedTime().toMillis());
+      } catch (IOException | UnsupportedOperationException e) {
+        return null;
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return size == key.size && lastModified == key.lastModified && realPath.equals(key.realPath);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(realPath, size, lastModified);
+    }
+  }
+}
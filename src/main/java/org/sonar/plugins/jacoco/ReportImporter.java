@@ -19,33 +19,118 @@
  */
 package org.sonar.plugins.jacoco;
 
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.coverage.NewCoverage;
 
 public class ReportImporter {
+  private static final Logger LOG = LoggerFactory.getLogger(ReportImporter.class);
+
   private final SensorContext ctx;
+  private final boolean changedFilesOnly;
+  @Nullable
+  private final Map<InputFile, CoverageAccumulator> mergedCoverage;
+  private final Set<InputFile> skippedFiles = new HashSet<>();
 
   public ReportImporter(SensorContext ctx) {
+    this(ctx, false);
+  }
+
+  /**
+   * @param changedFilesOnly whether to leave out the files which didn't change, whose coverage isn't needed by pull request analyses
+   */
+  public ReportImporter(SensorContext ctx, boolean changedFilesOnly) {
+    this(ctx, changedFilesOnly, false);
+  }
+
+  /**
+   * @param mergeReports whether to accumulate the coverage of each file across all the reports, to save it once in {@link #saveMerged()},
+   * instead of saving it once per report and leaving the merge to the scanner
+   */
+  public ReportImporter(SensorContext ctx, boolean changedFilesOnly, boolean mergeReports) {
     this.ctx = ctx;
+    this.changedFilesOnly = changedFilesOnly;
+    this.mergedCoverage = mergeReports ? new LinkedHashMap<>() : null;
+  }
+
+  /**
+   * @return whether the coverage of the file is imported, which may be checked before the lines of the source file are read
+   */
+  boolean needsCoverage(InputFile inputFile) {
+    return !changedFilesOnly || inputFile.status() != InputFile.Status.SAME;
   }
 
   public void importCoverage(XmlReportParser.SourceFile sourceFile, InputFile inputFile) {
+    if (!needsCoverage(inputFile)) {
+      // A file found in several reports is only counted once
+      skippedFiles.add(inputFile);
+      return;
+    }
+
+    if (mergedCoverage != null) {
+      // Invalid lines are reported for the report they come from, as when saving right away
+      checkLines(sourceFile, inputFile);
+      mergedCoverage.computeIfAbsent(inputFile, file -> new CoverageAccumulator()).add(sourceFile);
+      return;
+    }
+
     NewCoverage newCoverage = ctx.newCoverage()
       .onFile(inputFile);
 
-    for (XmlReportParser.Line line : sourceFile.lines()) {
+    sourceFile.forEachLine((number, missedInstrs, coveredInstrs, missedBranches, coveredBranches) -> {
       boolean conditions = false;
-      if (line.coveredBranches() > 0 || line.missedBranches() > 0) {
-        int branches = line.coveredBranches() + line.missedBranches();
-        newCoverage.conditions(line.number(), branches, line.coveredBranches());
+      if (coveredBranches > 0 || missedBranches > 0) {
+        int branches = coveredBranches + missedBranches;
+        newCoverage.conditions(number, branches, coveredBranches);
         conditions = true;
       }
-      if (conditions || line.coveredInstrs() > 0 || line.missedInstrs() > 0) {
-        newCoverage.lineHits(line.number(), line.coveredInstrs() > 0 ? 1 : 0);
+      if (conditions || coveredInstrs > 0 || missedInstrs > 0) {
+        newCoverage.lineHits(number, coveredInstrs > 0 ? 1 : 0);
       }
-    }
+    });
 
     newCoverage.save();
   }
+
+  private static void checkLines(XmlReportParser.SourceFile sourceFile, InputFile inputFile) {
+    int lines = inputFile.lines();
+    sourceFile.forEachLine((number, missedInstrs, coveredInstrs, missedBranches, coveredBranches) -> {
+      boolean hasCode = coveredBranches > 0 || missedBranches > 0 || coveredInstrs > 0 || missedInstrs > 0;
+      if (hasCode && (number < 1 || number > lines)) {
+        throw new IllegalStateException(String.format("Line %d is out of range in the file %s (lines: %d)", number, inputFile, lines));
+      }
+    });
+  }
+
+  /**
+   * Saves the coverage accumulated for each file, once all the reports have been imported. Does nothing unless reports are merged.
+   */
+  public void saveMerged() {
+    if (mergedCoverage == null) {
+      return;
+    }
+    for (Map.Entry<InputFile, CoverageAccumulator> entry : mergedCoverage.entrySet()) {
+      try {
+        entry.getValue().saveTo(ctx.newCoverage().onFile(entry.getKey()));
+      } catch (IllegalStateException e) {
+        LOG.error("Cannot import coverage information for file '{}', coverage data is invalid. Error: {}: {}", entry.getKey(), e.getClass().getName(),
+          e.getMessage());
+      }
+    }
+    mergedCoverage.clear();
+  }
+
+  /**
+   * @return the number of distinct files left out because they didn't change
+   */
+  public int skippedFiles() {
+    return skippedFiles.size();
+  }
 }
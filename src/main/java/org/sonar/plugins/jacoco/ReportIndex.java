@@ -0,0 +1,153 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+
+/**
+ * The byte ranges of the packages of a report, so that a module can parse the packages it may contain without parsing the whole report.
+ * <p>
+ * Building the index only scans the report for its 'package' elements, which is much cheaper than parsing them. Packages are then
+ * selected by name, and each run of consecutive selected packages is parsed from its own mapping of the report, so that the cost
+ * of importing a shared report in a module follows the size of the module rather than the size of the report.
+ * Only uncompressed reports large enough to be mapped are indexed.
+ * <p>
+ * The index is kept in memory for the sensors of all the modules by {@link Cache}, rather than in the cache of the analysis: building
+ * it costs about as much as the digest identifying the report in that cache. The parsed packages are kept in the cache of the analysis
+ * instead, see {@link AnalysisReportCache#parseSlice}.
+ */
+class ReportIndex {
+  static final long INDEX_THRESHOLD = ReportInput.MAPPING_THRESHOLD;
+
+  private final Path path;
+  private final List<ByteXmlReportScanner.PackageRange> ranges;
+
+  ReportIndex(Path path, List<ByteXmlReportScanner.PackageRange> ranges) {
+    this.path = path;
+    this.ranges = Collections.unmodifiableList(ranges);
+  }
+
+  static boolean isIndexable(Path path) {
+    try {
+      return !CompressedReports.isCompressed(path) && Files.size(path) >= INDEX_THRESHOLD;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  static ReportIndex build(Path path, NameTable names) throws IOException {
+    try (ReportInput input = ReportInput.open(path)) {
+      return new ReportIndex(path, new ByteXmlReportScanner(input, names).scanPackageRanges());
+    }
+  }
+
+  List<ByteXmlReportScanner.PackageRange> ranges() {
+    return ranges;
+  }
+
+  /**
+   * Streams the source files of the packages accepted by the filter, in the order of the report.
+   */
+  void parse(Predicate<String> packageFilter, NameTable names, Consumer<XmlReportParser.SourceFile> consumer) throws IOException {
+    parse(packageFilter, null, names, null, consumer);
+  }
+
+  /**
+   * @param sourceFileFilter the source files whose lines are needed, see {@link ByteXmlReportScanner#setSourceFileFilter(Predicate)}
+   * @param analysisCache the cache in which each run of consecutive selected packages is kept for the next analysis, if enabled
+   */
+  void parse(Predicate<String> packageFilter, @Nullable Predicate<XmlReportParser.SourceFile> sourceFileFilter, NameTable names,
+    @Nullable AnalysisReportCache analysisCache, Consumer<XmlReportParser.SourceFile> consumer) throws IOException {
+    List<ByteXmlReportScanner.PackageRange> run = new ArrayList<>();
+    for (ByteXmlReportScanner.PackageRange range : ranges) {
+      if (packageFilter.test(range.packageName)) {
+        run.add(range);
+      } else if (!run.isEmpty()) {
+        parseRun(run, sourceFileFilter, names, analysisCache, consumer);
+        run.clear();
+      }
+    }
+    if (!run.isEmpty()) {
+      parseRun(run, sourceFileFilter, names, analysisCache, consumer);
+    }
+  }
+
+  private void parseRun(List<ByteXmlReportScanner.PackageRange> run, @Nullable Predicate<XmlReportParser.SourceFile> sourceFileFilter,
+    NameTable names, @Nullable AnalysisReportCache analysisCache, Consumer<XmlReportParser.SourceFile> consumer) throws IOException {
+    if (analysisCache == null) {
+      ParallelReportParser.scanRanges(path, run, names, sourceFileFilter, consumer);
+      return;
+    }
+    ByteXmlReportScanner.PackageRange first = run.get(0);
+    long end = run.get(run.size() - 1).end;
+    try {
+      // Like whole reports, the runs missing from the cache are parsed with all their lines so that they can be stored
+      analysisCache.parseSlice(path, first.start, end, first.groupName, sourceFiles -> {
+        try {
+          ParallelReportParser.scanRanges(path, run, names, null, sourceFiles);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }, names, sourceFileFilter, consumer);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * The indexes of the reports shared by the sensors of all the modules, identified like in {@link ReportCache}.
+   */
+  static class Cache {
+    private final Map<ReportCache.Key, ReportIndex> indexes = new ConcurrentHashMap<>();
+
+    ReportIndex get(Path path, NameTable names) throws IOException {
+      ReportCache.Key key = ReportCache.Key.of(path);
+      if (key == null) {
+        return build(path, names);
+      }
+      try {
+        return indexes.computeIfAbsent(key, k -> {
+          try {
+            return build(path, names);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+
+    int size() {
+      return indexes.size();
+    }
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.annotation.CheckForNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The bytes of a report, handed over as successive chunks.
+ * <p>
+ * Large reports are memory-mapped, in windows so that reports over 2 GB can be read as well: this saves the copies and system calls
+ * of buffered reads, and lets several sensors reading the same report share the pages of the file system cache.
+ * Smaller reports, for which setting up a mapping costs more than it saves, are read through a single reused buffer,
+ * as are compressed reports, see {@link CompressedReports}.
+ */
+abstract class ReportInput implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(ReportInput.class);
+
+  static final long MAPPING_THRESHOLD = 8L * 1024 * 1024;
+  static final int BUFFER_SIZE = 64 * 1024;
+  static final long WINDOW_SIZE = 1L << 30;
+
+  static ReportInput open(Path path) throws IOException {
+    if (CompressedReports.isCompressed(path)) {
+      return new Streamed(CompressedReports.open(path));
+    }
+    long size = Files.size(path);
+    if (size >= MAPPING_THRESHOLD) {
+      FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+      try {
+        return new Mapped(channel, 0, size, WINDOW_SIZE);
+      } catch (IOException | UnsupportedOperationException e) {
+        channel.close();
+        LOG.debug("Failed to memory-map report '{}', falling back to buffered reads: {}", path, e.getMessage());
+      }
+    }
+    return new Streamed(Files.newInputStream(path));
+  }
+
+  /**
+   * @return the next chunk, positioned at 0, or null once the whole report has been read. The chunk is only valid until the next call.
+   */
+  @CheckForNull
+  abstract ByteBuffer next() throws IOException;
+
+  InputStream asInputStream() {
+    return new ChunksInputStream(this);
+  }
+
+  static class Mapped extends ReportInput {
+    private final FileChannel channel;
+    private final long end;
+    private final long windowSize;
+    private long offset;
+    private ByteBuffer firstWindow;
+
+    Mapped(FileChannel channel, long start, long end, long windowSize) throws IOException {
+      this.channel = channel;
+      this.offset = start;
+      this.end = end;
+      this.windowSize = windowSize;
+      // Mapping the first window right away lets the caller fall back to buffered reads when mapping is not possible
+      this.firstWindow = map();
+    }
+
+    @Override
+    ByteBuffer next() throws IOException {
+      if (firstWindow != null) {
+        ByteBuffer window = firstWindow;
+        firstWindow = null;
+        return window;
+      }
+      return map();
+    }
+
+    @CheckForNull
+    private ByteBuffer map() throws IOException {
+      if (offset >= end) {
+        return null;
+      }
+      long length = Math.min(windowSize, end - offset);
+      ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+      offset += length;
+      return window;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  static class Streamed extends ReportInput {
+    private final InputStream input;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    Streamed(InputStream input) {
+      this.input = input;
+    }
+
+    @Override
+    ByteBuffer next() throws IOException {
+      int read = input.read(buffer, 0, buffer.length);
+      if (read == -1) {
+        return null;
+      }
+      return ByteBuffer.wrap(buffer, 0, read);
+    }
+
+    @Override
+    InputStream asInputStream() {
+      return input;
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+  }
+
+  private static class ChunksInputStream extends InputStream {
+    private final ReportInput chunks;
+    private ByteBuffer current = ByteBuffer.allocate(0);
+
+    ChunksInputStream(ReportInput chunks) {
+      this.chunks = chunks;
+    }
+
+    private boolean ensureAvailable() throws IOException {
+      while (current != null && !current.hasRemaining()) {
+        current = chunks.next();
+      }
+      return current != null;
+    }
+
+    @Override
+    public int read() throws IOException {
+      return ensureAvailable() ? (current.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!ensureAvailable()) {
+        return -1;
+      }
+      int count = Math.min(len, current.remaining());
+      current.get(b, off, count);
+      return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+      chunks.close();
+    }
+  }
+}
@@ -43,6 +43,8 @@ class ReportPathsProvider {
 
   static final String AGGREGATE_REPORT_PATHS_PROPERTY_KEY = "sonar.coverage.jacoco.aggregateXmlReportPaths";
   static final String REPORT_PATHS_PROPERTY_KEY = "sonar.coverage.jacoco.xmlReportPaths";
+  static final String EXEC_REPORT_PATHS_PROPERTY_KEY = "sonar.coverage.jacoco.execReportPaths";
+  static final String CLASS_DIRECTORIES_PROPERTY_KEY = "sonar.java.binaries";
 
   private final SensorContext context;
   private final AnalysisWarnings analysisWarnings;
@@ -114,5 +116,39 @@ class ReportPathsProvider {
     return reportPaths;
   }
 
+  /**
+   * Finds the JaCoCo execution data files matching the patterns of the exec report paths property. There are no default locations:
+   * execution data is only read when the property is set.
+   */
+  Set<Path> getExecPaths() {
+    Path baseDir = context.fileSystem().baseDir().toPath().toAbsolutePath();
+    Set<Path> execPaths = new HashSet<>();
+    for (String pattern : context.config().getStringArray(EXEC_REPORT_PATHS_PROPERTY_KEY)) {
+      if (pattern.isEmpty()) {
+        continue;
+      }
+      List<Path> scanned = WildcardPatternFileScanner.scan(baseDir, pattern);
+      if (scanned.isEmpty()) {
+        String message = String.format("No execution data found for pattern: '%s'", pattern);
+        LOG.warn(message);
+        analysisWarnings.addUnique(message);
+      } else {
+        execPaths.addAll(scanned);
+      }
+    }
+    return execPaths;
+  }
 
+  /**
+   * Directories of the compiled classes the execution data was recorded against, as set for the analysis of Java sources.
+   */
+  List<Path> getClassDirectories() {
+    Path baseDir = context.fileSystem().baseDir().toPath().toAbsolutePath();
+    return Stream.of(context.config().getStringArray(CLASS_DIRECTORIES_PROPERTY_KEY))
+      .filter(directory -> !directory.isEmpty())
+      .map(baseDir::resolve)
+      .filter(Files::isDirectory)
+      .distinct()
+      .collect(Collectors.toList());
+  }
 }
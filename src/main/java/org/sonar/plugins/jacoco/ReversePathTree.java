@@ -19,66 +19,462 @@
  */
 package org.sonar.plugins.jacoco;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.io.File;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputFile;
 
+/**
+ * The files of a project, indexed by their path segments from the file name up to the root directory, so that files can be looked up
+ * by a suffix of their path.
+ * <p>
+ * The tree is meant to hold millions of files with little memory. Since paths are indexed from their file name, which is mostly
+ * unique, most of the tree is made of chains of nodes with a single child: such chains are held by a single node, labeled by
+ * the ids of their segments, each distinct segment being stored once. Nodes are ints indexing flat arrays, and the children of all
+ * the nodes are found in a single open addressing table, keyed by their parent and the first segment of their label.
+ * The first child of each node is kept to walk down to a leaf in the order in which the files were indexed.
+ * <p>
+ * Since the children of the root are keyed by file name, a file whose name is unique in the project is a single node labeled by its
+ * whole path. Once its name is hashed, the rest of a lookup is a comparison with the segments of its label, as within any label:
+ * only the segments at branching nodes are hashed. Files sharing their name with others are counted, to be reported.
+ */
 public class ReversePathTree {
-  private Node root = new Node();
+  private static final int ROOT = 0;
+  /**
+   * Marks a node without children in {@link #firstChild}, and an empty slot in {@link #childNodes}: the root is nobody's child.
+   */
+  private static final int NONE = 0;
+
+  private final Segments segments = new Segments();
+
+  private int[] labels = new int[64];
+  private int labelsSize;
+
+  private int nodeCount = 1;
+  private int[] labelStart = new int[16];
+  private int[] labelLength = new int[16];
+  private int[] firstChild = new int[16];
+  private InputFile[] files = new InputFile[16];
+  private final BitSet hasSeveralChildren = new BitSet();
+
+  private int fileCount;
+  private int[] filesByName = new int[16];
+  private int filesWithSharedName;
+
+  private long[] childKeys = new long[32];
+  private int[] childNodes = new int[32];
+  private int childCount;
 
   public void index(InputFile inputFile, String[] path) {
-    Node currentNode = root;
-    for (int i = path.length - 1; i >= 0; i--) {
-      currentNode = currentNode.children.computeIfAbsent(path[i], e -> new Node());
+    int node = ROOT;
+    int i = path.length - 1;
+    while (i >= 0) {
+      int segment = segments.intern(path[i]);
+      int child = child(node, segment);
+      if (child == NONE) {
+        node = addChild(node, segment, newNode(path, i));
+        break;
+      }
+      int start = labelStart[child];
+      int matched = 1;
+      i--;
+      while (matched < labelLength[child] && i >= 0 && labels[start + matched] == segments.intern(path[i])) {
+        matched++;
+        i--;
+      }
+      node = matched < labelLength[child] ? split(node, child, matched) : child;
+    }
+    if (files[node] == null && path.length > 0) {
+      countFile(segments.id(path[path.length - 1]));
     }
-    currentNode.file = inputFile;
+    files[node] = inputFile;
   }
 
-  public InputFile getFileWithSuffix(String[] path) {
-    Node currentNode = root;
+  private void countFile(int fileName) {
+    fileCount++;
+    if (fileName >= filesByName.length) {
+      filesByName = Arrays.copyOf(filesByName, Math.max(filesByName.length * 2, fileName + 1));
+    }
+    int sameName = filesByName[fileName]++;
+    if (sameName > 0) {
+      filesWithSharedName += sameName == 1 ? 2 : 1;
+    }
+  }
 
-    for (int i = path.length - 1; i >= 0; i--) {
-      currentNode = currentNode.children.get(path[i]);
-      if (currentNode == null) {
-        return null;
+  /**
+   * @return the number of distinct files indexed
+   */
+  int fileCount() {
+    return fileCount;
+  }
+
+  /**
+   * @return the number of files whose name is shared by other files, which can only be told apart by their directories
+   */
+  int filesWithSharedName() {
+    return filesWithSharedName;
+  }
+
+  /**
+   * @return the names of the indexed files accepted by the filter
+   */
+  Set<String> fileNames(Predicate<InputFile> filter) {
+    Set<String> names = new HashSet<>();
+    for (int node = 0; node < nodeCount; node++) {
+      InputFile file = files[node];
+      if (file != null && filter.test(file)) {
+        names.add(file.filename());
       }
     }
-    return getFirstLeaf(currentNode);
+    return Collections.unmodifiableSet(names);
   }
 
+  @CheckForNull
+  public InputFile getFileWithSuffix(String[] path) {
+    int node = find(path);
+    return node < 0 ? null : firstLeafFile(node);
+  }
+
+  /**
+   * Same as {@link #getFileWithSuffix(String[])} with the segments of 'packagePath/fileName', which are read backwards from the given
+   * sequences without creating any intermediate string.
+   */
+  @CheckForNull
+  public InputFile getFileWithSuffix(CharSequence packagePath, CharSequence fileName) {
+    int node = find(packagePath, fileName);
+    return node < 0 ? null : firstLeafFile(node);
+  }
+
+  @CheckForNull
   public InputFile getFileWithSuffix(String module, String[] path) {
-    Node currentNode = root;
-    for (int i = path.length - 1; i >= 0; i--) {
-      currentNode = currentNode.children.get(path[i]);
-      if (currentNode == null) {
-        return null;
+    int node = find(path);
+    return node < 0 ? null : moduleFile(module, node);
+  }
+
+  /**
+   * Same as {@link #getFileWithSuffix(String, String[])} with the segments of 'packagePath/fileName', see
+   * {@link #getFileWithSuffix(CharSequence, CharSequence)}.
+   */
+  @CheckForNull
+  public InputFile getFileWithSuffix(String module, CharSequence packagePath, CharSequence fileName) {
+    int node = find(packagePath, fileName);
+    return node < 0 ? null : moduleFile(module, node);
+  }
+
+  @CheckForNull
+  private InputFile firstLeafFile(int node) {
+    while (firstChild[node] != NONE) {
+      node = firstChild[node];
+    }
+    return files[node];
+  }
+
+  @CheckForNull
+  private InputFile moduleFile(String module, int node) {
+    while (firstChild[node] != NONE) {
+      if (!hasSeveralChildren.get(node)) {
+        node = firstChild[node];
+      } else {
+        int moduleSegment = segments.id(module);
+        int moduleNode = moduleSegment < 0 ? NONE : child(node, moduleSegment);
+        // The file must be right under the module segment, not further up the label
+        return moduleNode == NONE || labelLength[moduleNode] > 1 ? null : files[moduleNode];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the node whose label holds the first segment of the path, once all the segments of the path are matched from the last one,
+   * or -1 if there is none. The rest of the label, if any, is a chain of single children, which is where lookups go next anyway.
+   */
+  private int find(String[] path) {
+    int node = ROOT;
+    int i = path.length - 1;
+    while (i >= 0) {
+      int segment = segments.id(path[i]);
+      int child = segment < 0 ? NONE : child(node, segment);
+      if (child == NONE) {
+        return -1;
+      }
+      int start = labelStart[child];
+      i--;
+      for (int matched = 1; matched < labelLength[child] && i >= 0; matched++, i--) {
+        if (!segments.name(labels[start + matched]).equals(path[i])) {
+          return -1;
+        }
       }
+      node = child;
     }
+    return node;
+  }
 
-    while (!currentNode.children.isEmpty()) {
-      if (currentNode.children.size() == 1) {
-        currentNode = currentNode.children.values().iterator().next();
+  /**
+   * Same as {@link #find(String[])} with the segments of 'packagePath/fileName', split on '/' as well as on the file separator.
+   * Since labels may span both parts, the segments of both parts are matched in a single pass.
+   */
+  private int find(CharSequence packagePath, CharSequence fileName) {
+    int node = ROOT;
+    int matched = 0;
+    CharSequence path = fileName;
+    int end = path.length();
+    while (true) {
+      int start = end;
+      while (start > 0 && !isSeparator(path.charAt(start - 1))) {
+        start--;
+      }
+      if (matched < labelLength[node]) {
+        // Within a label, the segment is compared in place rather than hashed
+        if (!regionEquals(segments.name(labels[labelStart[node] + matched]), path, start, end)) {
+          return -1;
+        }
+        matched++;
       } else {
-        for (String candidate : currentNode.children.keySet()) {
-          if (module.equals(candidate)) {
-            return currentNode.children.get(candidate).file;
-          }
+        int segment = segments.id(path, start, end);
+        node = segment < 0 ? NONE : child(node, segment);
+        if (node == NONE) {
+          return -1;
         }
-        return null;
+        matched = 1;
+      }
+      if (start > 0) {
+        end = start - 1;
+      } else if (path == fileName && packagePath.length() > 0) {
+        path = packagePath;
+        end = path.length();
+      } else {
+        return node;
       }
     }
-    return null;
   }
 
-  private static InputFile getFirstLeaf(Node node) {
-    while (!node.children.isEmpty()) {
-      node = node.children.values().iterator().next();
+  private static boolean regionEquals(String name, CharSequence path, int start, int end) {
+    if (name.length() != end - start) {
+      return false;
+    }
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) != path.charAt(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSeparator(char c) {
+    return c == '/' || c == File.separatorChar;
+  }
+
+  private int child(int parent, int segment) {
+    long key = childKey(parent, segment);
+    int mask = childKeys.length - 1;
+    for (int slot = slot(key, mask); childNodes[slot] != NONE; slot = (slot + 1) & mask) {
+      if (childKeys[slot] == key) {
+        return childNodes[slot];
+      }
+    }
+    return NONE;
+  }
+
+  private int childSlot(long key) {
+    int mask = childKeys.length - 1;
+    int slot = slot(key, mask);
+    while (childNodes[slot] != NONE && childKeys[slot] != key) {
+      slot = (slot + 1) & mask;
     }
-    return node.file;
+    return slot;
   }
 
-  static class Node {
-    Map<String, Node> children = new LinkedHashMap<>();
-    InputFile file = null;
+  private int addChild(int parent, int segment, int node) {
+    if (firstChild[parent] == NONE) {
+      firstChild[parent] = node;
+    } else {
+      hasSeveralChildren.set(parent);
+    }
+    long key = childKey(parent, segment);
+    int slot = childSlot(key);
+    childKeys[slot] = key;
+    childNodes[slot] = node;
+    childCount++;
+    if (childCount * 2 > childKeys.length) {
+      growChildren();
+    }
+    return node;
+  }
+
+  /**
+   * Cuts the label of the node after its first segments, which become a new node taking its place under its parent.
+   *
+   * @return the new node
+   */
+  private int split(int parent, int node, int length) {
+    int head = newNode();
+    labelStart[head] = labelStart[node];
+    labelLength[head] = length;
+    labelStart[node] += length;
+    labelLength[node] -= length;
+
+    childNodes[childSlot(childKey(parent, labels[labelStart[head]]))] = head;
+    if (firstChild[parent] == node) {
+      firstChild[parent] = head;
+    }
+    firstChild[head] = node;
+    long key = childKey(head, labels[labelStart[node]]);
+    int slot = childSlot(key);
+    childKeys[slot] = key;
+    childNodes[slot] = node;
+    childCount++;
+    if (childCount * 2 > childKeys.length) {
+      growChildren();
+    }
+    return head;
+  }
+
+  /**
+   * @return a new node labeled by the segments of the path from the given one down to the first one
+   */
+  private int newNode(String[] path, int from) {
+    int node = newNode();
+    if (labelsSize + from + 1 > labels.length) {
+      labels = Arrays.copyOf(labels, Math.max(labels.length * 2, labelsSize + from + 1));
+    }
+    labelStart[node] = labelsSize;
+    labelLength[node] = from + 1;
+    for (int i = from; i >= 0; i--) {
+      labels[labelsSize++] = segments.intern(path[i]);
+    }
+    return node;
+  }
+
+  private int newNode() {
+    if (nodeCount == firstChild.length) {
+      int length = nodeCount * 2;
+      labelStart = Arrays.copyOf(labelStart, length);
+      labelLength = Arrays.copyOf(labelLength, length);
+      firstChild = Arrays.copyOf(firstChild, length);
+      files = Arrays.copyOf(files, length);
+    }
+    return nodeCount++;
+  }
+
+  private void growChildren() {
+    long[] oldKeys = childKeys;
+    int[] oldNodes = childNodes;
+    childKeys = new long[oldKeys.length * 2];
+    childNodes = new int[oldNodes.length * 2];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldNodes[i] != NONE) {
+        int slot = childSlot(oldKeys[i]);
+        childKeys[slot] = oldKeys[i];
+        childNodes[slot] = oldNodes[i];
+      }
+    }
+  }
+
+  private static long childKey(int parent, int segment) {
+    return ((long) parent << 32) | segment;
+  }
+
+  private static int slot(long key, int mask) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash >>> 32) & mask;
+  }
+
+  int nodeCount() {
+    return nodeCount;
+  }
+
+  int segmentCount() {
+    return segments.size;
+  }
+
+  /**
+   * Interns the distinct segments of the indexed paths, identified by their index in the order in which they were first met.
+   */
+  private static final class Segments {
+    private String[] names = new String[16];
+    private int size;
+    /**
+     * Open addressing table of the ids of the segments plus one, zero marking an empty slot.
+     */
+    private int[] slots = new int[32];
+
+    /**
+     * @return the id of the segment held by the given range of characters, without creating a string, or -1 if it isn't known
+     */
+    int id(CharSequence path, int start, int end) {
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        hash = 31 * hash + path.charAt(i);
+      }
+      int mask = slots.length - 1;
+      for (int slot = slot(hash, mask); slots[slot] != 0; slot = (slot + 1) & mask) {
+        int id = slots[slot] - 1;
+        if (regionEquals(names[id], path, start, end)) {
+          return id;
+        }
+      }
+      return -1;
+    }
+
+    String name(int id) {
+      return names[id];
+    }
+
+    int id(String segment) {
+      int mask = slots.length - 1;
+      for (int slot = slot(segment, mask); slots[slot] != 0; slot = (slot + 1) & mask) {
+        int id = slots[slot] - 1;
+        if (names[id].equals(segment)) {
+          return id;
+        }
+      }
+      return -1;
+    }
+
+    int intern(String segment) {
+      int mask = slots.length - 1;
+      int slot = slot(segment, mask);
+      for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+        int id = slots[slot] - 1;
+        if (names[id].equals(segment)) {
+          return id;
+        }
+      }
+      if (size == names.length) {
+        names = Arrays.copyOf(names, size * 2);
+      }
+      names[size] = segment;
+      slots[slot] = ++size;
+      if (size * 2 > slots.length) {
+        rehash();
+      }
+      return size - 1;
+    }
+
+    private static int slot(String segment, int mask) {
+      // Same hash as String.hashCode(), which ranges of characters can compute as well
+      return slot(segment.hashCode(), mask);
+    }
+
+    private static int slot(int hash, int mask) {
+      return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void rehash() {
+      slots = new int[slots.length * 2];
+      int mask = slots.length - 1;
+      for (int id = 0; id < size; id++) {
+        int slot = slot(names[id], mask);
+        while (slots[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+      }
+    }
   }
 }
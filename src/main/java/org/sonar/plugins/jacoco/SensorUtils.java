@@ -20,47 +20,212 @@
 package org.sonar.plugins.jacoco;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.notifications.AnalysisWarnings;
 
 class SensorUtils {
+  private static final int QUEUE_CAPACITY = 1024;
+
   private SensorUtils() {
     /* This class should not be instantiated */
   }
 
   static void importReports(Collection<Path> reportPaths, FileLocator locator, ReportImporter importer, Logger logger, AnalysisWarnings analysisWarnings) {
+    importReports(reportPaths, locator, importer, logger, analysisWarnings, ImportSettings.defaults());
+  }
+
+  static void importReports(Collection<Path> reportPaths, FileLocator locator, ReportImporter importer, Logger logger, AnalysisWarnings analysisWarnings,
+    ImportSettings settings) {
     logger.info("Importing {} report(s). Turn your logs in debug mode in order to see the exhaustive list.", reportPaths.size());
+    // The lines of the source files named after none of the files to import are skipped. Such files are still handed over without their
+    // lines, to be reported as when they are fully read. The names are resolved before parsing, so that the threads parsing the reports
+    // don't call the Sonar API: files are only looked up on this thread.
+    Set<String> importedFileNames = locator.fileNames(importer::needsCoverage);
+    settings = settings.copy().setSourceFileFilter(sourceFile -> importedFileNames.contains(sourceFile.name()));
 
+    // The same source files usually appear in several reports, which then share the instances of their names
+    NameTable names = new NameTable();
+    if (settings.streamingMerge() && reportPaths.size() > 1) {
+      new StreamingReportMerger(new ArrayList<>(reportPaths), settings, names, (reportPath, e) -> reportFailure(reportPath, e, logger, analysisWarnings))
+        .merge(sourceFile -> importSourceFile(sourceFile, locator, importer, logger));
+      return;
+    }
+    int workers = Math.min(settings.importThreads(), reportPaths.size());
+    if (workers > 1) {
+      importReportsConcurrently(reportPaths, locator, importer, logger, analysisWarnings, settings, names, workers);
+      return;
+    }
     for (Path reportPath : reportPaths) {
       logger.debug("Reading report '{}'", reportPath);
       try {
-        SensorUtils.importReport(new XmlReportParser(reportPath), locator, importer, logger);
+        SensorUtils.importReport(new XmlReportParser(reportPath, settings, names), locator, importer, logger);
       } catch (Exception e) {
-        String message = String.format("Coverage report '%s' could not be read/imported. Error: %s: %s", reportPath, e.getClass().getName(), e.getMessage());
-        logger.error(message);
-        analysisWarnings.addUnique(message);
+        reportFailure(reportPath, e, logger, analysisWarnings);
+      }
+    }
+  }
+
+  /**
+   * Parses the reports on a pool of worker threads, while the source files they contain are located and imported one at a time,
+   * on the calling thread, as the Sonar API expects. The queue between both sides is bounded, so that workers can't get too far ahead.
+   * A report failing to be read or imported is reported, and its remaining source files ignored, without affecting the other reports.
+   */
+  private static void importReportsConcurrently(Collection<Path> reportPaths, FileLocator locator, ReportImporter importer, Logger logger,
+    AnalysisWarnings analysisWarnings, ImportSettings settings, NameTable names, int workers) {
+    // The threads of the machine are shared among the reports parsed concurrently
+    ImportSettings reportSettings = settings.copy().setParserThreads(Math.max(1, settings.parserThreads() / workers));
+    BlockingQueue<ReportEvent> events = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+      Thread thread = new Thread(runnable, "jacoco-report-import");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      for (Path reportPath : reportPaths) {
+        ReportState report = new ReportState(reportPath);
+        executor.execute(() -> readReport(report, reportSettings, names, events, logger));
+      }
+      int remaining = reportPaths.size();
+      while (remaining > 0) {
+        ReportEvent event = events.take();
+        ReportState report = event.report;
+        if (event.sourceFile == null) {
+          remaining--;
+          if (event.failure != null && !report.failed) {
+            reportFailure(report.path, event.failure, logger, analysisWarnings);
+          }
+        } else if (!report.failed) {
+          try {
+            importSourceFile(event.sourceFile, locator, importer, logger);
+          } catch (Exception e) {
+            report.failed = true;
+            reportFailure(report.path, e, logger, analysisWarnings);
+          }
+        }
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while importing coverage reports", e);
+    } finally {
+      executor.shutdownNow();
     }
   }
 
+  private static void readReport(ReportState report, ImportSettings settings, NameTable names, BlockingQueue<ReportEvent> events, Logger logger) {
+    logger.debug("Reading report '{}'", report.path);
+    Exception failure = null;
+    try {
+      new XmlReportParser(report.path, settings, names).parse(sourceFile -> {
+        if (report.failed) {
+          throw new CancellationException("Import of the report has failed");
+        }
+        put(events, new ReportEvent(report, sourceFile, null));
+      });
+    } catch (Exception e) {
+      failure = e;
+    }
+    put(events, new ReportEvent(report, null, failure));
+  }
+
+  private static void put(BlockingQueue<ReportEvent> events, ReportEvent event) {
+    try {
+      events.put(event);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CancellationException("Import of the reports has been interrupted");
+    }
+  }
+
+  private static void reportFailure(Path reportPath, Exception e, Logger logger, AnalysisWarnings analysisWarnings) {
+    String message = String.format("Coverage report '%s' could not be read/imported. Error: %s: %s", reportPath, e.getClass().getName(), e.getMessage());
+    logger.error(message);
+    analysisWarnings.addUnique(message);
+  }
+
   static void importReport(XmlReportParser reportParser, FileLocator locator, ReportImporter importer, Logger logger) {
-    List<XmlReportParser.SourceFile> sourceFiles = reportParser.parse();
+    reportParser.parse(sourceFile -> importSourceFile(sourceFile, locator, importer, logger));
+  }
 
-    for (XmlReportParser.SourceFile sourceFile : sourceFiles) {
-      InputFile inputFile = locator.getInputFile(sourceFile.groupName(), sourceFile.packageName(), sourceFile.name());
-      if (inputFile == null) {
-        logger.warn("File '{}' not found in project sources", sourceFile.name());
-        continue;
-      }
+  /**
+   * Imports the coverage computed from JaCoCo execution data files and the given class directories. The execution data of all
+   * the files is merged before the classes are analyzed, so that the classes are only analyzed once.
+   */
+  static void importExecReports(Collection<Path> execPaths, Collection<Path> classDirectories, FileLocator locator, ReportImporter importer,
+    Logger logger, AnalysisWarnings analysisWarnings, ImportSettings settings) {
+    logger.info("Importing {} execution data file(s). Turn your logs in debug mode in order to see the exhaustive list.", execPaths.size());
 
+    ExecReportParser parser = new ExecReportParser(classDirectories, settings.parserThreads(), new NameTable());
+    boolean loaded = false;
+    for (Path execPath : execPaths) {
+      logger.debug("Reading execution data '{}'", execPath);
       try {
-        importer.importCoverage(sourceFile, inputFile);
-      } catch (IllegalStateException e) {
-        logger.error("Cannot import coverage information for file '{}', coverage data is invalid. Error: {}: {}", inputFile, e.getClass().getName(), e.getMessage());
+        parser.load(execPath);
+        loaded = true;
+      } catch (Exception e) {
+        reportFailure(execPath, e, logger, analysisWarnings);
       }
     }
+    if (!loaded) {
+      return;
+    }
+
+    try {
+      parser.parse(sourceFile -> importSourceFile(sourceFile, locator, importer, logger));
+    } catch (Exception e) {
+      String message = String.format("Coverage could not be computed from the execution data with the classes of %s. Error: %s: %s",
+        classDirectories, e.getClass().getName(), e.getMessage());
+      logger.error(message);
+      analysisWarnings.addUnique(message);
+    }
+  }
+
+  private static void importSourceFile(XmlReportParser.SourceFile sourceFile, FileLocator locator, ReportImporter importer, Logger logger) {
+    InputFile inputFile = locator.getInputFile(sourceFile.groupName(), sourceFile.packageName(), sourceFile.name());
+    if (inputFile == null) {
+      logger.warn("File '{}' not found in project sources", sourceFile.name());
+      return;
+    }
+
+    try {
+      importer.importCoverage(sourceFile, inputFile);
+    } catch (IllegalStateException e) {
+      logger.error("Cannot import coverage information for file '{}', coverage data is invalid. Error: {}: {}", inputFile, e.getClass().getName(), e.getMessage());
+    }
+  }
+
+  private static class ReportState {
+    private final Path path;
+    private volatile boolean failed;
+
+    private ReportState(Path path) {
+      this.path = path;
+    }
+  }
+
+  /**
+   * Either a source file read from a report, or the end of a report, with the failure which ended it if any.
+   */
+  private static class ReportEvent {
+    private final ReportState report;
+    @Nullable
+    private final XmlReportParser.SourceFile sourceFile;
+    @Nullable
+    private final Exception failure;
+
+    private ReportEvent(ReportState report, @Nullable XmlReportParser.SourceFile sourceFile, @Nullable Exception failure) {
+      this.report = report;
+      this.sourceFile = sourceFile;
+      this.failure = failure;
+    }
   }
 }
@@ -0,0 +1,46 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The {@link XMLInputFactory} used by the StAX parser, looked up and configured once per sensor execution rather than once per report.
+ */
+class StaxFactory {
+  private XMLInputFactory factory;
+
+  /**
+   * Factories are not required to be thread-safe, and reports may be parsed concurrently: creating a reader is cheap compared to
+   * parsing the report, so readers are simply created one at a time.
+   */
+  synchronized XMLStreamReader createReader(InputStream input) throws XMLStreamException {
+    if (factory == null) {
+      factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+      factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    }
+    return factory.createXMLStreamReader(input, StandardCharsets.UTF_8.name());
+  }
+}
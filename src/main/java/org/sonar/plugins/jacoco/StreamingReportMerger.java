@@ -0,0 +1,168 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+
+/**
+ * Merges many reports of nearly the same source files, such as the reports of the shards of a test suite, by reading them in lockstep.
+ * JaCoCo lists the packages and source files of a report in the same order, so that a source file can be merged and handed over as
+ * soon as the cursors of all the reports have moved past it. The memory needed is then bound by the number of reports, each keeping
+ * one source file, rather than by the volume of all the reports.
+ * <p>
+ * A report listing its source files in another order is still merged, but its out of order source files are handed over more than once.
+ */
+class StreamingReportMerger {
+  private static final Comparator<String> NULLS_FIRST = Comparator.nullsFirst(Comparator.naturalOrder());
+  static final Comparator<XmlReportParser.SourceFile> SOURCE_FILE_ORDER = Comparator
+    .comparing(XmlReportParser.SourceFile::groupName, NULLS_FIRST)
+    .thenComparing(XmlReportParser.SourceFile::packageName)
+    .thenComparing(XmlReportParser.SourceFile::name);
+
+  private final List<Path> reportPaths;
+  private final ImportSettings settings;
+  private final NameTable names;
+  private final BiConsumer<Path, Exception> failureHandler;
+
+  /**
+   * @param failureHandler notified of each report failing to be read, whose remaining source files are then left out
+   */
+  StreamingReportMerger(List<Path> reportPaths, ImportSettings settings, NameTable names, BiConsumer<Path, Exception> failureHandler) {
+    this.reportPaths = reportPaths;
+    this.settings = settings;
+    this.names = names;
+    this.failureHandler = failureHandler;
+  }
+
+  void merge(Consumer<XmlReportParser.SourceFile> consumer) {
+    PriorityQueue<ReportCursor> cursors = new PriorityQueue<>(Math.max(1, reportPaths.size()),
+      Comparator.comparing((ReportCursor cursor) -> cursor.head, SOURCE_FILE_ORDER));
+    try {
+      for (Path reportPath : reportPaths) {
+        open(reportPath, cursors);
+      }
+      List<ReportCursor> sameFileCursors = new ArrayList<>();
+      List<XmlReportParser.SourceFile> sameFiles = new ArrayList<>();
+      while (!cursors.isEmpty()) {
+        // All the cursors on the same source file are taken out before any of them moves on, so that none is left behind
+        do {
+          ReportCursor cursor = cursors.poll();
+          sameFileCursors.add(cursor);
+          sameFiles.add(cursor.head);
+        } while (!cursors.isEmpty() && SOURCE_FILE_ORDER.compare(cursors.peek().head, sameFiles.get(0)) == 0);
+        for (ReportCursor cursor : sameFileCursors) {
+          advance(cursor, cursors);
+        }
+        consumer.accept(merge(sameFiles));
+        sameFileCursors.clear();
+        sameFiles.clear();
+      }
+    } finally {
+      cursors.forEach(ReportCursor::close);
+    }
+  }
+
+  private void open(Path reportPath, PriorityQueue<ReportCursor> cursors) {
+    ReportCursor cursor;
+    try {
+      cursor = new ReportCursor(reportPath, new XmlReportParser(reportPath, settings, names).cursor());
+    } catch (Exception e) {
+      failureHandler.accept(reportPath, e);
+      return;
+    }
+    advance(cursor, cursors);
+  }
+
+  /**
+   * Moves the cursor to the next source file of its report, and puts it back in the queue unless its report is over.
+   */
+  private void advance(ReportCursor cursor, PriorityQueue<ReportCursor> cursors) {
+    try {
+      cursor.head = cursor.source.next();
+    } catch (Exception e) {
+      cursor.close();
+      failureHandler.accept(cursor.reportPath, e);
+      return;
+    }
+    if (cursor.head == null) {
+      cursor.close();
+    } else {
+      cursors.add(cursor);
+    }
+  }
+
+  /**
+   * Merges the lines of the same source file read from several reports: a line is covered as soon as one report covers it, while
+   * the number of branches and of covered branches are the maximum of all the reports.
+   */
+  static XmlReportParser.SourceFile merge(List<XmlReportParser.SourceFile> sameFiles) {
+    XmlReportParser.SourceFile first = sameFiles.get(0);
+    if (sameFiles.size() == 1) {
+      return first;
+    }
+    List<XmlReportParser.Line> lines = new ArrayList<>();
+    for (XmlReportParser.SourceFile sourceFile : sameFiles) {
+      lines.addAll(sourceFile.lines());
+    }
+    lines.sort(Comparator.comparingInt(XmlReportParser.Line::number));
+
+    XmlReportParser.SourceFile merged = new XmlReportParser.SourceFile(first.packageName(), first.name(), first.groupName());
+    int index = 0;
+    while (index < lines.size()) {
+      XmlReportParser.Line line = lines.get(index);
+      int missedInstrs = line.missedInstrs();
+      int coveredInstrs = line.coveredInstrs();
+      int branches = line.missedBranches() + line.coveredBranches();
+      int coveredBranches = line.coveredBranches();
+      for (index++; index < lines.size() && lines.get(index).number() == line.number(); index++) {
+        XmlReportParser.Line sameLine = lines.get(index);
+        missedInstrs = Math.max(missedInstrs, sameLine.missedInstrs());
+        coveredInstrs = Math.max(coveredInstrs, sameLine.coveredInstrs());
+        branches = Math.max(branches, sameLine.missedBranches() + sameLine.coveredBranches());
+        coveredBranches = Math.max(coveredBranches, sameLine.coveredBranches());
+      }
+      merged.addLine(line.number(), missedInstrs, coveredInstrs, branches - coveredBranches, coveredBranches);
+    }
+    return merged;
+  }
+
+  private static class ReportCursor {
+    private final Path reportPath;
+    private final XmlReportParser.SourceFileCursor source;
+    @Nullable
+    private XmlReportParser.SourceFile head;
+
+    private ReportCursor(Path reportPath, XmlReportParser.SourceFileCursor source) {
+      this.reportPath = reportPath;
+      this.source = source;
+    }
+
+    private void close() {
+      source.close();
+    }
+  }
+}
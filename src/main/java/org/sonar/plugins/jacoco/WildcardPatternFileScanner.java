@@ -46,6 +46,32 @@ public final class WildcardPatternFileScanner {
 
   public static List<Path>  scan(Path baseDirectory, String patternPath) {
     String unixLikePatternPath = toUnixLikePath(patternPath);
+    int archiveSeparatorIndex = CompressedReports.indexOfArchiveSeparator(unixLikePatternPath);
+    if (archiveSeparatorIndex != -1) {
+      return scanArchives(baseDirectory, unixLikePatternPath.substring(0, archiveSeparatorIndex),
+        unixLikePatternPath.substring(archiveSeparatorIndex + CompressedReports.ARCHIVE_SEPARATOR.length()));
+    }
+    return scanFiles(baseDirectory, unixLikePatternPath);
+  }
+
+  /**
+   * Scans the entries of the archives matching the part of the pattern before the '!' separator, such as 'coverage.zip!/module-a/jacoco.xml',
+   * for those matching the part after it. Both parts may contain wildcards.
+   */
+  private static List<Path> scanArchives(Path baseDirectory, String unixLikeArchivePattern, String entryPattern) {
+    List<Path> paths = new ArrayList<>();
+    for (Path archive : scanFiles(baseDirectory, unixLikeArchivePattern)) {
+      try {
+        paths.addAll(CompressedReports.entries(archive, entryPattern));
+      } catch (IOException | RuntimeException e) {
+        LOG.error("Failed to get Jacoco report paths: Reading archive '" + archive + "' with pattern '" + entryPattern + "'" +
+          " threw a " + e.getClass().getSimpleName() + ": " + e.getMessage());
+      }
+    }
+    return paths;
+  }
+
+  private static List<Path> scanFiles(Path baseDirectory, String unixLikePatternPath) {
     int specialCharIndex = indexOfMatcherSpecialChar(unixLikePatternPath);
     if (specialCharIndex == -1) {
       return scanNonWildcardPattern(baseDirectory, unixLikePatternPath);
@@ -20,107 +20,269 @@
 package org.sonar.plugins.jacoco;
 
 import java.io.IOException;
-import java.io.Reader;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
 public class XmlReportParser {
   private final Path xmlReportPath;
+  private final ImportSettings settings;
+  private final NameTable names;
 
   private static final String COLUMN = " column ";
+  private static final String[] LINE_ATTRIBUTES = {"nr", "mi", "ci", "mb", "cb"};
+  private static final long INVALID_INT = Long.MIN_VALUE;
 
   public XmlReportParser(Path xmlReportPath) {
+    this(xmlReportPath, ImportSettings.defaults());
+  }
+
+  XmlReportParser(Path xmlReportPath, ImportSettings settings) {
+    this(xmlReportPath, settings, new NameTable());
+  }
+
+  /**
+   * @param names the table interning the names read from the report, shared with the parsers of the other reports of the same analysis
+   */
+  XmlReportParser(Path xmlReportPath, ImportSettings settings, NameTable names) {
     this.xmlReportPath = xmlReportPath;
+    this.settings = settings;
+    this.names = names;
   }
 
   public List<SourceFile> parse() {
-    XMLInputFactory factory = XMLInputFactory.newInstance();
-    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
-    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    List<SourceFile> sourceFiles = new ArrayList<>();
+    parse(sourceFiles::add);
+    return sourceFiles;
+  }
+
+  /**
+   * Streams the source files of the report to the given consumer, one at a time, as soon as their closing 'sourcefile' element is read.
+   * The parser does not keep any reference to a source file once it has been handed over, so the memory needed to parse a report
+   * is bound by its largest source file rather than by the whole report.
+   * <p>
+   * Source files rejected by the filter of the settings are handed over without their lines, which are not decoded. Reports put in
+   * the cache shared by the modules are parsed whole, since their source files may be needed by the other modules.
+   * <p>
+   * When enabled by the settings, only the packages of the module are parsed from the large reports shared by the modules, see
+   * {@link ReportIndex}.
+   */
+  public void parse(Consumer<SourceFile> consumer) {
+    ReportCache reportCache = settings.reportCache();
+    ReportIndex.Cache reportIndexes = settings.reportIndexes();
+    Predicate<String> packageFilter = settings.packageFilter();
+    if (settings.reportSlicing() && settings.parser() == ImportSettings.Parser.BYTES && reportIndexes != null && packageFilter != null
+      && ReportIndex.isIndexable(xmlReportPath)) {
+      // Only the packages of the module are parsed, unless the whole report was already parsed for the other modules
+      if (reportCache == null || !reportCache.parseCached(xmlReportPath, consumer)) {
+        parseSlices(reportIndexes, packageFilter, consumer);
+      }
+      return;
+    }
+    if (reportCache != null && reportCache.isEnabled()) {
+      reportCache.parse(xmlReportPath, (sourceFiles, whole) -> loadOrParseReport(sourceFiles, whole ? null : settings.sourceFileFilter()),
+        consumer);
+    } else {
+      loadOrParseReport(consumer, settings.sourceFileFilter());
+    }
+  }
+
+  private void parseSlices(ReportIndex.Cache reportIndexes, Predicate<String> packageFilter, Consumer<SourceFile> consumer) {
+    try {
+      reportIndexes.get(xmlReportPath, names)
+        .parse(packageFilter, settings.sourceFileFilter(), names, settings.analysisCache(), consumer);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to parse JaCoCo XML report: " + xmlReportPath.toAbsolutePath(), e);
+    }
+  }
+
+  private void loadOrParseReport(Consumer<SourceFile> consumer, @Nullable Predicate<SourceFile> sourceFileFilter) {
+    AnalysisReportCache analysisCache = settings.analysisCache();
+    if (analysisCache != null) {
+      // Only the reports loaded from the cache are filtered, the others are parsed whole so that they can be stored for the next analysis
+      analysisCache.parse(xmlReportPath, sourceFiles -> parseReport(sourceFiles, null), names, sourceFileFilter, consumer);
+    } else {
+      parseReport(consumer, sourceFileFilter);
+    }
+  }
+
+  private void parseReport(Consumer<SourceFile> consumer, @Nullable Predicate<SourceFile> sourceFileFilter) {
+    if (settings.parser() == ImportSettings.Parser.BYTES) {
+      parseBytes(consumer, sourceFileFilter);
+    } else {
+      parseWithStax(consumer, sourceFileFilter);
+    }
+  }
+
+  private void parseBytes(Consumer<SourceFile> consumer, @Nullable Predicate<SourceFile> sourceFileFilter) {
+    try {
+      if (settings.parserThreads() > 1 && !CompressedReports.isCompressed(xmlReportPath) && Files.size(xmlReportPath) >= ParallelReportParser.PARALLEL_THRESHOLD) {
+        new ParallelReportParser(xmlReportPath, settings.parserThreads(), names, sourceFileFilter).parse(consumer);
+        return;
+      }
+      try (ReportInput input = ReportInput.open(xmlReportPath)) {
+        new ByteXmlReportScanner(input, names).setSourceFileFilter(sourceFileFilter).scan(consumer);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to parse JaCoCo XML report: " + xmlReportPath.toAbsolutePath(), e);
+    }
+  }
 
-    XMLStreamReader xmlStreamReaderParser = null;
-    try (Reader reader = Files.newBufferedReader(xmlReportPath, StandardCharsets.UTF_8)) {
-      xmlStreamReaderParser = factory.createXMLStreamReader(reader);
-      // Need to be effectively final to be used in Supplier lambdas
-      final XMLStreamReader parser = xmlStreamReaderParser;
+  private void parseWithStax(Consumer<SourceFile> consumer, @Nullable Predicate<SourceFile> sourceFileFilter) {
+    try (SourceFileCursor cursor = cursor(sourceFileFilter)) {
+      SourceFile sourceFile;
+      while ((sourceFile = cursor.next()) != null) {
+        consumer.accept(sourceFile);
+      }
+    }
+  }
 
-      List<SourceFile> sourceFiles = new ArrayList<>();
+  /**
+   * Opens a cursor pulling the source files of the report one at a time with the StAX parser, so that several reports can be read
+   * in lockstep. The cursor must be closed once done with it.
+   */
+  SourceFileCursor cursor() {
+    return cursor(settings.sourceFileFilter());
+  }
+
+  private SourceFileCursor cursor(@Nullable Predicate<SourceFile> sourceFileFilter) {
+    InputStream input = null;
+    try {
+      input = ReportInput.open(xmlReportPath).asInputStream();
+      // The StAX parser decodes the bytes itself, without going through an intermediate Reader
+      return new SourceFileCursor(input, settings.staxFactory().createReader(input), sourceFileFilter);
+    } catch (XMLStreamException | IOException e) {
+      closeQuietly(input);
+      throw new IllegalStateException("Failed to parse JaCoCo XML report: " + xmlReportPath.toAbsolutePath(), e);
+    }
+  }
 
-      String groupName = null;
-      String packageName = null;
-      String sourceFileName = null;
+  private static void closeQuietly(@Nullable InputStream input) {
+    if (input != null) {
+      try {
+        input.close();
+      } catch (IOException e) {
+        // do nothing - the report failed to be opened in the first place
+      }
+    }
+  }
+
+  class SourceFileCursor implements AutoCloseable {
+    private final InputStream input;
+    private final XMLStreamReader parser;
+    @Nullable
+    private final Predicate<SourceFile> sourceFileFilter;
+    private final int[] lineValues = new int[LINE_ATTRIBUTES.length];
+    private String groupName = null;
+    private String packageName = null;
+    private boolean done;
+
+    private SourceFileCursor(InputStream input, XMLStreamReader parser, @Nullable Predicate<SourceFile> sourceFileFilter) {
+      this.input = input;
+      this.parser = parser;
+      this.sourceFileFilter = sourceFileFilter;
+    }
+
+    /**
+     * @return the next source file of the report, or null once all of them have been read
+     */
+    @CheckForNull
+    SourceFile next() {
+      try {
+        return done ? null : readNext();
+      } catch (XMLStreamException e) {
+        throw new IllegalStateException("Failed to parse JaCoCo XML report: " + xmlReportPath.toAbsolutePath(), e);
+      }
+    }
+
+    @CheckForNull
+    private SourceFile readNext() throws XMLStreamException {
+      SourceFile currentFile = null;
 
       while (true) {
         int event = parser.next();
 
         if (event == XMLStreamConstants.END_DOCUMENT) {
-          parser.close();
-          break;
+          done = true;
+          return null;
         } else if (event == XMLStreamConstants.END_ELEMENT) {
           String element = parser.getLocalName();
           if (element.equals("package")) {
             packageName = null;
           } else if (element.equals("sourcefile")) {
-            sourceFileName = null;
+            return currentFile;
           } else if (element.equals("group")) {
             groupName = null;
           }
         } else if (event == XMLStreamConstants.START_ELEMENT) {
           String element = parser.getLocalName();
 
-          if (element.equals("group")) {
-            groupName = getStringAttr(parser, "name", () -> "for a 'group' at line" + parser.getLocation().getLineNumber() + COLUMN + parser.getLocation().getColumnNumber());
-          } else if (element.equals("package")) {
-            packageName = getStringAttr(parser, "name", () -> "for a 'package' at line " + parser.getLocation().getLineNumber() + COLUMN + parser.getLocation().getColumnNumber());
+          // Ordered by decreasing frequency of the elements
+          if (element.equals("line")) {
+            if (currentFile == null) {
+              throw new IllegalStateException("Invalid report: expected to find 'line' within a 'sourcefile' at line "
+                + parser.getLocation().getLineNumber() + COLUMN + parser.getLocation().getColumnNumber());
+            }
+            addLine(parser, currentFile, lineValues);
+          } else if (element.equals("class")) {
+            skipSubtree(parser);
           } else if (element.equals("sourcefile")) {
             if (packageName == null) {
               throw new IllegalStateException("Invalid report: expected to find 'sourcefile' within a 'package' at line "
                 + parser.getLocation().getLineNumber() + COLUMN + parser.getLocation().getColumnNumber());
             }
-            sourceFileName = getStringAttr(parser, "name", () -> "for a sourcefile at line "
-              + parser.getLocation().getLineNumber() + COLUMN + parser.getLocation().getColumnNumber());
-            sourceFiles.add(new SourceFile(packageName, sourceFileName, groupName));
-          } else if (element.equals("line")) {
-            if (sourceFileName == null) {
-              throw new IllegalStateException("Invalid report: expected to find 'line' within a 'sourcefile' at line "
-                + parser.getLocation().getLineNumber() + COLUMN + parser.getLocation().getColumnNumber());
+            String sourceFileName = names.intern(getStringAttr(parser, "name", () -> "for a sourcefile at line "
+              + parser.getLocation().getLineNumber() + COLUMN + parser.getLocation().getColumnNumber()));
+            currentFile = new SourceFile(packageName, sourceFileName, groupName);
+            if (sourceFileFilter != null && !sourceFileFilter.test(currentFile)) {
+              // The lines of the file are not needed
+              skipSubtree(parser);
+              return currentFile;
             }
-            SourceFile file = sourceFiles.get(sourceFiles.size() - 1);
-            Supplier<String> errorCtx = () -> "for the sourcefile '" + file.name() + "' at line "
-              + parser.getLocation().getLineNumber() + COLUMN + parser.getLocation().getColumnNumber();
-
-            Line line = new Line(
-              getIntAttr(parser, "nr", errorCtx),
-              getOptionalIntAttr(parser, "mi", errorCtx),
-              getOptionalIntAttr(parser, "ci", errorCtx),
-              getOptionalIntAttr(parser, "mb", errorCtx),
-              getOptionalIntAttr(parser, "cb", errorCtx));
-            file.lines().add(line);
+          } else if (element.equals("package")) {
+            packageName = names.intern(getStringAttr(parser, "name", () -> "for a 'package' at line " + parser.getLocation().getLineNumber() + COLUMN + parser.getLocation().getColumnNumber()));
+          } else if (element.equals("group")) {
+            groupName = names.intern(getStringAttr(parser, "name", () -> "for a 'group' at line" + parser.getLocation().getLineNumber() + COLUMN + parser.getLocation().getColumnNumber()));
           }
         }
       }
+    }
 
-      return sourceFiles;
-    } catch (XMLStreamException | IOException e) {
-      throw new IllegalStateException("Failed to parse JaCoCo XML report: " + xmlReportPath.toAbsolutePath(), e);
-    } finally {
-      if (xmlStreamReaderParser != null) {
-        try {
-          xmlStreamReaderParser.close();
-        } catch (XMLStreamException e) {
-          // do nothing - the stream used to read from will be closed by the try-with-resource
-        }
+    @Override
+    public void close() {
+      try {
+        parser.close();
+      } catch (XMLStreamException e) {
+        // do nothing - the stream used to read from is closed below
+      }
+      closeQuietly(input);
+    }
+  }
+
+  /**
+   * Skips the children of the current element, which holds no information used by the plugin, without looking at their names.
+   */
+  private static void skipSubtree(XMLStreamReader parser) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = parser.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
       }
     }
   }
@@ -133,32 +295,97 @@ public class XmlReportParser {
     return value;
   }
 
-  private static int getOptionalIntAttr(XMLStreamReader parser, String name, Supplier<String> errorContext) {
-    String value = parser.getAttributeValue(null, name);
-    if (value == null) {
-      return 0;
+  /**
+   * Reads the counters of a 'line' element in a single pass over its attributes, decoding them into ints without any allocation.
+   * The context of the error messages is only built when the line is invalid.
+   */
+  private static void addLine(XMLStreamReader parser, SourceFile file, int[] values) {
+    Arrays.fill(values, 0);
+    int present = 0;
+    int invalid = 0;
+    for (int i = 0, count = parser.getAttributeCount(); i < count; i++) {
+      int index = lineAttributeIndex(parser.getAttributeLocalName(i));
+      if (index != -1) {
+        present |= 1 << index;
+        long value = decodeInt(parser.getAttributeValue(i));
+        if (value == INVALID_INT) {
+          invalid |= 1 << index;
+        } else {
+          values[index] = (int) value;
+        }
+      }
     }
-    try {
-      return Integer.parseInt(value);
-    } catch (Exception e) {
-      throw new IllegalStateException("Invalid report: failed to parse integer from the attribute '" + name + "' " + errorContext.get());
+    if ((present & 1) == 0 || invalid != 0) {
+      throw invalidLine(parser, file, present, invalid);
     }
+    file.addLine(values[0], values[1], values[2], values[3], values[4]);
   }
 
-  private static int getIntAttr(XMLStreamReader parser, String name, Supplier<String> errorContext) {
-    String value = getStringAttr(parser, name, errorContext);
+  private static IllegalStateException invalidLine(XMLStreamReader parser, SourceFile file, int present, int invalid) {
+    String errorContext = "for the sourcefile '" + file.name() + "' at line "
+      + parser.getLocation().getLineNumber() + COLUMN + parser.getLocation().getColumnNumber();
+    if ((present & 1) == 0) {
+      return new IllegalStateException("Invalid report: couldn't find the attribute '" + LINE_ATTRIBUTES[0] + "' " + errorContext);
+    }
+    // The first invalid attribute, in the order of LINE_ATTRIBUTES
+    String attribute = LINE_ATTRIBUTES[Integer.numberOfTrailingZeros(invalid)];
+    return new IllegalStateException("Invalid report: failed to parse integer from the attribute '" + attribute + "' " + errorContext);
+  }
+
+  private static int lineAttributeIndex(String localName) {
+    if (localName.length() != 2) {
+      return -1;
+    }
+    for (int i = 0; i < LINE_ATTRIBUTES.length; i++) {
+      String attribute = LINE_ATTRIBUTES[i];
+      if (localName.charAt(0) == attribute.charAt(0) && localName.charAt(1) == attribute.charAt(1)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the decoded value, or {@link #INVALID_INT} when it's not an int, as {@link Integer#parseInt(String)} would tell
+   */
+  static long decodeInt(String value) {
+    int length = value.length();
+    // Up to 9 digits can't overflow, anything else, such as signs, is left to Integer.parseInt
+    if (length == 0 || length > 9) {
+      return parseInt(value);
+    }
+    int result = 0;
+    for (int i = 0; i < length; i++) {
+      int digit = value.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return parseInt(value);
+      }
+      result = result * 10 + digit;
+    }
+    return result;
+  }
+
+  private static long parseInt(String value) {
     try {
       return Integer.parseInt(value);
-    } catch (Exception e) {
-      throw new IllegalStateException("Invalid report: failed to parse integer from the attribute '" + name + "' " + errorContext.get());
+    } catch (NumberFormatException e) {
+      return INVALID_INT;
     }
   }
 
   static class SourceFile {
+    private static final int LINE_FIELDS = 5;
+    private static final int[] NO_LINES = new int[0];
+
     private String name;
     private String packageName;
     private @Nullable String groupName;
-    private List<Line> lines = new ArrayList<>();
+    /**
+     * The lines, packed as consecutive (number, missed instructions, covered instructions, missed branches, covered branches) tuples,
+     * which costs a fraction of the memory of one {@link Line} object per line.
+     */
+    private int[] lineData = NO_LINES;
+    private int lineCount;
 
     SourceFile(String packageName, String name) {
       this(packageName, name, null);
@@ -186,11 +413,58 @@ public class XmlReportParser {
       return groupName;
     }
 
+    public void addLine(int number, int missedInstrs, int coveredInstrs, int missedBranches, int coveredBranches) {
+      int offset = lineCount * LINE_FIELDS;
+      if (offset == lineData.length) {
+        lineData = Arrays.copyOf(lineData, Math.max(16 * LINE_FIELDS, lineData.length + (lineData.length >> 1) / LINE_FIELDS * LINE_FIELDS));
+      }
+      lineData[offset] = number;
+      lineData[offset + 1] = missedInstrs;
+      lineData[offset + 2] = coveredInstrs;
+      lineData[offset + 3] = missedBranches;
+      lineData[offset + 4] = coveredBranches;
+      lineCount++;
+    }
+
+    public int lineCount() {
+      return lineCount;
+    }
+
+    /**
+     * Visits the lines in report order, without allocating any object per line.
+     */
+    public void forEachLine(LineConsumer consumer) {
+      int[] data = lineData;
+      for (int offset = 0, end = lineCount * LINE_FIELDS; offset < end; offset += LINE_FIELDS) {
+        consumer.accept(data[offset], data[offset + 1], data[offset + 2], data[offset + 3], data[offset + 4]);
+      }
+    }
+
+    /**
+     * Read-only view of the lines, materializing a {@link Line} on each access. Prefer {@link #forEachLine(LineConsumer)} on hot paths.
+     */
     public List<Line> lines() {
-      return lines;
+      return new AbstractList<>() {
+        @Override
+        public Line get(int index) {
+          Objects.checkIndex(index, lineCount);
+          int offset = index * LINE_FIELDS;
+          return new Line(lineData[offset], lineData[offset + 1], lineData[offset + 2], lineData[offset + 3], lineData[offset + 4]);
+        }
+
+        @Override
+        public int size() {
+          return lineCount;
+        }
+      };
     }
   }
 
+  @FunctionalInterface
+  interface LineConsumer {
+    void accept(int number, int missedInstrs, int coveredInstrs, int missedBranches, int coveredBranches);
+  }
+
   static class Line {
     private int number;
     private int missedInstrs;
@@ -0,0 +1,267 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonar.api.batch.sensor.cache.ReadCache;
+import org.sonar.api.batch.sensor.cache.WriteCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnalysisReportCacheTest {
+
+  @TempDir
+  Path temp;
+
+  private final AtomicInteger parsed = new AtomicInteger();
+
+  @Test
+  void unchanged_report_is_loaded_from_the_previous_analysis() throws IOException {
+    Path report = copy("jacoco-aggregate.xml");
+    MapCache first = new MapCache(new HashMap<>());
+    List<XmlReportParser.SourceFile> parsedFiles = parse(new AnalysisReportCache(first, first), report);
+    assertThat(parsed).hasValue(1);
+    assertThat(first.written).hasSize(1);
+
+    MapCache second = new MapCache(first.written);
+    List<XmlReportParser.SourceFile> loadedFiles = parse(new AnalysisReportCache(second, second), report);
+
+    assertThat(parsed).hasValue(1);
+    assertThat(second.copied).containsExactlyElementsOf(first.written.keySet());
+    assertThat(loadedFiles).hasSameSizeAs(parsedFiles);
+    for (int i = 0; i < parsedFiles.size(); i++) {
+      assertThat(loadedFiles.get(i).groupName()).isEqualTo(parsedFiles.get(i).groupName());
+      assertThat(loadedFiles.get(i).packageName()).isEqualTo(parsedFiles.get(i).packageName());
+      assertThat(loadedFiles.get(i).name()).isEqualTo(parsedFiles.get(i).name());
+      assertThat(loadedFiles.get(i).lines()).isEqualTo(parsedFiles.get(i).lines());
+    }
+  }
+
+  @Test
+  void changed_report_is_parsed_again() throws IOException {
+    Path report = copy("jacoco.xml");
+    MapCache first = new MapCache(new HashMap<>());
+    parse(new AnalysisReportCache(first, first), report);
+
+    Files.copy(Paths.get("src", "test", "resources", "simple.xml"), report, StandardCopyOption.REPLACE_EXISTING);
+    MapCache second = new MapCache(first.written);
+    List<XmlReportParser.SourceFile> sourceFiles = parse(new AnalysisReportCache(second, second), report);
+
+    assertThat(parsed).hasValue(2);
+    assertThat(sourceFiles).extracting(XmlReportParser.SourceFile::name).containsExactly("File.java");
+    assertThat(second.copied).isEmpty();
+    assertThat(second.written).hasSize(1).doesNotContainKeys(first.written.keySet().toArray(new String[0]));
+  }
+
+  @Test
+  void corrupted_binary_form_falls_back_to_parsing() throws IOException {
+    Path report = copy("jacoco.xml");
+    MapCache first = new MapCache(new HashMap<>());
+    List<XmlReportParser.SourceFile> parsedFiles = parse(new AnalysisReportCache(first, first), report);
+    Map<String, byte[]> corrupted = new HashMap<>();
+    first.written.keySet().forEach(key -> corrupted.put(key, new byte[] {0, 0, 0, 42}));
+
+    MapCache second = new MapCache(corrupted);
+    List<XmlReportParser.SourceFile> sourceFiles = parse(new AnalysisReportCache(second, second), report);
+
+    assertThat(parsed).hasValue(2);
+    assertThat(sourceFiles).hasSameSizeAs(parsedFiles);
+  }
+
+  @Test
+  void report_shared_by_several_modules_is_stored_once() throws IOException {
+    Path report = copy("jacoco.xml");
+    MapCache cache = new MapCache(new HashMap<>());
+    AnalysisReportCache analysisCache = new AnalysisReportCache(cache, cache);
+
+    parse(analysisCache, report);
+    List<XmlReportParser.SourceFile> sourceFiles = parse(analysisCache, report);
+
+    assertThat(cache.written).hasSize(1);
+    assertThat(sourceFiles).isNotEmpty();
+  }
+
+  @Test
+  void lines_of_rejected_source_files_are_not_loaded() throws IOException {
+    Path report = copy("jacoco.xml");
+    MapCache first = new MapCache(new HashMap<>());
+    List<XmlReportParser.SourceFile> parsedFiles = parse(new AnalysisReportCache(first, first), report, sourceFile -> false);
+
+    MapCache second = new MapCache(first.written);
+    List<XmlReportParser.SourceFile> loadedFiles = parse(new AnalysisReportCache(second, second), report,
+      sourceFile -> sourceFile.name().startsWith("S"));
+
+    assertThat(parsed).hasValue(1);
+    assertThat(loadedFiles).hasSameSizeAs(parsedFiles);
+    for (int i = 0; i < parsedFiles.size(); i++) {
+      assertThat(loadedFiles.get(i).name()).isEqualTo(parsedFiles.get(i).name());
+      if (parsedFiles.get(i).name().startsWith("S")) {
+        assertThat(loadedFiles.get(i).lines()).isEqualTo(parsedFiles.get(i).lines()).isNotEmpty();
+      } else {
+        assertThat(loadedFiles.get(i).lines()).isEmpty();
+      }
+    }
+  }
+
+  @Test
+  void names_of_loaded_source_files_are_interned() throws IOException {
+    Path report = copy("jacoco.xml");
+    MapCache first = new MapCache(new HashMap<>());
+    parse(new AnalysisReportCache(first, first), report);
+
+    NameTable names = new NameTable();
+    String packageName = names.intern(new String("org/sonarlint/cli"));
+    MapCache second = new MapCache(first.written);
+    List<XmlReportParser.SourceFile> loadedFiles = new ArrayList<>();
+    new AnalysisReportCache(second, second).parse(report, consumer -> parsed.incrementAndGet(), names, null, loadedFiles::add);
+
+    assertThat(parsed).hasValue(1);
+    assertThat(loadedFiles).filteredOn(sourceFile -> sourceFile.packageName().equals(packageName)).isNotEmpty()
+      .allSatisfy(sourceFile -> assertThat(sourceFile.packageName()).isSameAs(packageName));
+  }
+
+  @Test
+  void unchanged_slices_are_loaded_from_the_previous_analysis() throws IOException {
+    Path report = copy("jacoco.xml");
+    ReportIndex index = ReportIndex.build(report, new NameTable());
+    List<String> packages = index.ranges().stream().map(range -> range.packageName).collect(Collectors.toList());
+    Predicate<String> packageFilter = Set.of(packages.get(0), packages.get(2), packages.get(3))::contains;
+    MapCache first = new MapCache(new HashMap<>());
+    List<XmlReportParser.SourceFile> parsedFiles = new ArrayList<>();
+    index.parse(packageFilter, null, new NameTable(), new AnalysisReportCache(first, first), parsedFiles::add);
+    assertThat(first.written).hasSize(2);
+
+    MapCache second = new MapCache(first.written);
+    List<XmlReportParser.SourceFile> loadedFiles = new ArrayList<>();
+    index.parse(packageFilter, null, new NameTable(), new AnalysisReportCache(second, second), loadedFiles::add);
+
+    assertThat(second.written).isEmpty();
+    assertThat(second.copied).containsExactlyInAnyOrderElementsOf(first.written.keySet());
+    assertThat(loadedFiles).hasSameSizeAs(parsedFiles).isNotEmpty();
+    for (int i = 0; i < parsedFiles.size(); i++) {
+      assertThat(loadedFiles.get(i).packageName()).isEqualTo(parsedFiles.get(i).packageName());
+      assertThat(loadedFiles.get(i).name()).isEqualTo(parsedFiles.get(i).name());
+      assertThat(loadedFiles.get(i).lines()).isEqualTo(parsedFiles.get(i).lines());
+    }
+  }
+
+  @Test
+  void variable_length_integers_round_trip() throws IOException {
+    int[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    for (int value : values) {
+      AnalysisReportCache.writeVarInt(output, value);
+    }
+
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    for (int value : values) {
+      assertThat(AnalysisReportCache.readVarInt(input)).isEqualTo(value);
+    }
+    assertThat(bytes.size()).isEqualTo(1 + 1 + 1 + 2 + 2 + 3 + 5 + 5 + 5);
+  }
+
+  private List<XmlReportParser.SourceFile> parse(AnalysisReportCache cache, Path report) {
+    return parse(cache, report, null);
+  }
+
+  private List<XmlReportParser.SourceFile> parse(AnalysisReportCache cache, Path report, Predicate<XmlReportParser.SourceFile> filter) {
+    List<XmlReportParser.SourceFile> sourceFiles = new ArrayList<>();
+    Consumer<Consumer<XmlReportParser.SourceFile>> parser = consumer -> {
+      parsed.incrementAndGet();
+      new XmlReportParser(report).parse(consumer);
+    };
+    cache.parse(report, parser, new NameTable(), filter, sourceFiles::add);
+    return sourceFiles;
+  }
+
+  private Path copy(String name) throws IOException {
+    return Files.copy(Paths.get("src", "test", "resources", name), temp.resolve(name));
+  }
+
+  /**
+   * The previous cache of an analysis, and its next cache, which rejects keys written twice like the cache of the scanner.
+   */
+  private static class MapCache implements ReadCache, WriteCache {
+    private final Map<String, byte[]> previous;
+    private final Map<String, byte[]> written = new HashMap<>();
+    private final Set<String> copied = new HashSet<>();
+
+    private MapCache(Map<String, byte[]> previous) {
+      this.previous = previous;
+    }
+
+    @Override
+    public InputStream read(String key) {
+      return new ByteArrayInputStream(previous.get(key));
+    }
+
+    @Override
+    public boolean contains(String key) {
+      return previous.containsKey(key);
+    }
+
+    @Override
+    public void write(String key, InputStream data) {
+      try {
+        write(key, data.readAllBytes());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void write(String key, byte[] data) {
+      if (written.containsKey(key) || copied.contains(key)) {
+        throw new IllegalArgumentException("Cache already contains key '" + key + "'");
+      }
+      written.put(key, data);
+    }
+
+    @Override
+    public void copyFromPrevious(String key) {
+      if (written.containsKey(key) || !copied.add(key)) {
+        throw new IllegalArgumentException("Cache already contains key '" + key + "'");
+      }
+    }
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ByteXmlReportScannerTest {
+
+  @TempDir
+  Path temp;
+
+  private Path load(String name) throws URISyntaxException {
+    return Paths.get(this.getClass().getClassLoader().getResource(name).toURI());
+  }
+
+  private static List<XmlReportParser.SourceFile> parse(Path report, ImportSettings.Parser parser) {
+    return new XmlReportParser(report, ImportSettings.defaults().setParser(parser)).parse();
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"jacoco.xml", "simple.xml", "kotlin.xml", "jacoco-aggregate.xml", "line_without_mi_ci_mb_cb.xml"})
+  void should_produce_the_same_source_files_as_stax(String name) throws URISyntaxException {
+    Path report = load(name);
+    assertThat(describe(parse(report, ImportSettings.Parser.BYTES)))
+      .isNotEmpty()
+      .isEqualTo(describe(parse(report, ImportSettings.Parser.STAX)));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"name_missing_in_package.xml", "name_missing_in_sourcefile.xml", "line_not_within_sourcefile.xml", "sourcefile_not_within_package.xml",
+    "invalid_ci_in_line.xml", "invalid_nr_in_line.xml", "nr_missing_in_line.xml"})
+  void should_fail_with_the_same_message_as_stax(String name) throws URISyntaxException {
+    Path report = load(name);
+    IllegalStateException expected = assertThrows(IllegalStateException.class, () -> parse(report, ImportSettings.Parser.STAX));
+    IllegalStateException actual = assertThrows(IllegalStateException.class, () -> parse(report, ImportSettings.Parser.BYTES));
+    assertThat(actual).hasMessage(expected.getMessage());
+  }
+
+  @Test
+  void should_handle_markup_the_plugin_does_not_use() throws IOException {
+    Path report = write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n" +
+      "<!DOCTYPE report PUBLIC \"-//JACOCO//DTD Report 1.1//EN\" \"report.dtd\">\r\n" +
+      "<!-- a comment with <package name=\"ignored\"> inside -->\r\n" +
+      "<report name='r'>\r\n" +
+      "  <group name=\"g&amp;1\">\r\n" +
+      "    <package name = 'org/&#x65;xample'>\r\n" +
+      "      <class name=\"org/example/A\" sourcefilename=\"A.java\"><method name=\"&lt;init&gt;\" desc=\"()V\" line=\"1\"/></class>\r\n" +
+      "      <sourcefile name=\"Été.java\">\r\n" +
+      "        <line nr=\"1\" mi=\"&#50;\" ci=\"3\" mb=\"0\" cb=\"0\"></line>\r\n" +
+      "        <line cb='4' nr='2' extra=\"&quot;>\"/>\r\n" +
+      "        <counter type=\"LINE\" missed=\"1\" covered=\"1\"/>\r\n" +
+      "      </sourcefile>\r\n" +
+      "    </package>\r\n" +
+      "  </group>\r\n" +
+      "</report>\r\n");
+
+    List<XmlReportParser.SourceFile> sourceFiles = parse(report, ImportSettings.Parser.BYTES);
+
+    assertThat(describe(sourceFiles)).isEqualTo(describe(parse(report, ImportSettings.Parser.STAX)));
+    assertThat(sourceFiles).hasSize(1);
+    XmlReportParser.SourceFile sourceFile = sourceFiles.get(0);
+    assertThat(sourceFile.groupName()).isEqualTo("g&1");
+    assertThat(sourceFile.packageName()).isEqualTo("org/example");
+    assertThat(sourceFile.name()).isEqualTo("Été.java");
+    assertThat(sourceFile.lines()).containsExactly(
+      new XmlReportParser.Line(1, 2, 3, 0, 0),
+      new XmlReportParser.Line(2, 0, 0, 0, 4));
+  }
+
+  @Test
+  void should_skip_class_subtrees_and_unused_elements() throws IOException {
+    Path report = write("<report name=\"r\">\n" +
+      "  <sessioninfo id=\"a test with a > in its name\" start=\"1\" dump=\"2\"/>\n" +
+      "  <package name=\"p\">\n" +
+      "    <class name=\"p/Empty\"/>\n" +
+      "    <class name=\"p/A\" sourcefilename=\"A.java\">\n" +
+      "      <method name=\"m\" desc=\"()V\" line=\"1\">\n" +
+      "        <counter type=\"LINE\" missed=\"1\" covered=\"0\"/>\n" +
+      "      </method>\n" +
+      "      <!-- </class> -->\n" +
+      "      <classic/>\n" +
+      "    </class >\n" +
+      "    <sourcefile name=\"A.java\">\n" +
+      "      <line nr=\"1\" mi=\"1\"/>\n" +
+      "      <line nr=\"2\" mi=\"x\"/>\n" +
+      "    </sourcefile>\n" +
+      "    <counter type=\"LINE\" missed=\"1\" covered=\"0\"/>\n" +
+      "  </package>\n" +
+      "</report>\n");
+
+    IllegalStateException expected = assertThrows(IllegalStateException.class, () -> parse(report, ImportSettings.Parser.STAX));
+    IllegalStateException actual = assertThrows(IllegalStateException.class, () -> parse(report, ImportSettings.Parser.BYTES));
+
+    assertThat(actual)
+      .hasMessage(expected.getMessage())
+      .hasMessage("Invalid report: failed to parse integer from the attribute 'mi' for the sourcefile 'A.java' at line 14 column 28");
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+    "<report><package name=\"p\"><sourcefile name=\"A.java\"/><sourcefile name=\"B.java\"><line nr=\"1\" ci=\"1\"/></sourcefile></package></report>",
+    "<report><group name=\"g\"/><package name=\"p\"><sourcefile name=\"A.java\"><line nr=\"1\"/></sourcefile></package></report>",
+    "<report><package name=\"empty\"/><group name=\"g\"><package name=\"p\"><sourcefile name=\"A.java\"/></package></group></report>",
+    "<report name=\"r\"/>",
+    "<report><package name=\"p\"><sourcefile name=\"A.java\"/></package></report>\n<!-- generated -->\n<?pi data?>\n"})
+  void should_handle_self_closing_elements_and_epilog_as_stax(String content) throws IOException {
+    Path report = write(content);
+    assertThat(describe(parse(report, ImportSettings.Parser.BYTES))).isEqualTo(describe(parse(report, ImportSettings.Parser.STAX)));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+    "<report><package name=\"p\"/><sourcefile name=\"A.java\"/></report>",
+    "<report><package name=\"p\"><sourcefile name=\"A.java\"/><line nr=\"1\"/></package></report>"})
+  void should_fail_on_elements_following_self_closing_ones_as_stax(String content) throws IOException {
+    Path report = write(content);
+    IllegalStateException expected = assertThrows(IllegalStateException.class, () -> parse(report, ImportSettings.Parser.STAX));
+    IllegalStateException actual = assertThrows(IllegalStateException.class, () -> parse(report, ImportSettings.Parser.BYTES));
+    assertThat(actual).hasMessage(expected.getMessage());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"<package name=\"q\"/>", "text", "< report/>", "<!DOCTYPE report>"})
+  void should_fail_on_content_after_the_report_as_stax(String epilog) throws IOException {
+    Path report = write("<report><package name=\"p\"><sourcefile name=\"A.java\"/></package></report>\n" + epilog);
+    IllegalStateException expected = assertThrows(IllegalStateException.class, () -> parse(report, ImportSettings.Parser.STAX));
+    IllegalStateException actual = assertThrows(IllegalStateException.class, () -> parse(report, ImportSettings.Parser.BYTES));
+    assertThat(actual).hasMessage(expected.getMessage());
+  }
+
+  @Test
+  void should_handle_reports_larger_than_the_read_buffer() throws IOException {
+    StringBuilder content = new StringBuilder("<report name=\"large\"><package name=\"org/example\">");
+    for (int file = 0; file < 200; file++) {
+      content.append("<sourcefile name=\"File").append(file).append(".java\">\n");
+      for (int line = 1; line <= 100; line++) {
+        content.append("<line nr=\"").append(line).append("\" mi=\"").append(file).append("\" ci=\"").append(line % 7).append("\" mb=\"0\" cb=\"0\"/>\n");
+      }
+      content.append("</sourcefile>\n");
+    }
+    content.append("</package></report>");
+    Path report = write(content.toString());
+
+    List<XmlReportParser.SourceFile> sourceFiles = parse(report, ImportSettings.Parser.BYTES);
+
+    assertThat(sourceFiles).hasSize(200);
+    assertThat(describe(sourceFiles)).isEqualTo(describe(parse(report, ImportSettings.Parser.STAX)));
+  }
+
+  @Test
+  void should_fail_on_integer_overflow() throws IOException {
+    Path report = write("<report><package name=\"p\"><sourcefile name=\"F.java\">\n<line nr=\"2147483648\"/></sourcefile></package></report>");
+
+    IllegalStateException exception = assertThrows(IllegalStateException.class, () -> parse(report, ImportSettings.Parser.BYTES));
+    assertThat(exception).hasMessage("Invalid report: failed to parse integer from the attribute 'nr' for the sourcefile 'F.java' at line 2 column 24");
+  }
+
+  @Test
+  void should_fail_on_truncated_report() throws IOException {
+    Path report = write("<report><package name=\"p\"><sourcefile name=\"F.java\"><line nr=\"1\"/>");
+
+    IllegalStateException exception = assertThrows(IllegalStateException.class, () -> parse(report, ImportSettings.Parser.BYTES));
+    assertThat(exception).hasMessage("Failed to parse JaCoCo XML report: " + report.toAbsolutePath());
+  }
+
+  @Test
+  void should_fail_if_root_element_is_not_a_report() throws IOException {
+    Path report = write("<coverage><package name=\"p\"></package></coverage>");
+
+    IllegalStateException exception = assertThrows(IllegalStateException.class, () -> parse(report, ImportSettings.Parser.BYTES));
+    assertThat(exception).hasMessage("Failed to parse JaCoCo XML report: " + report.toAbsolutePath());
+  }
+
+  @Test
+  void should_fail_if_report_does_not_exist() {
+    Path report = temp.resolve("report.xml");
+
+    IllegalStateException exception = assertThrows(IllegalStateException.class, () -> parse(report, ImportSettings.Parser.BYTES));
+    assertThat(exception).hasMessage("Failed to parse JaCoCo XML report: " + report.toAbsolutePath());
+  }
+
+  private Path write(String content) throws IOException {
+    Path report = temp.resolve("report.xml");
+    Files.write(report, content.getBytes(StandardCharsets.UTF_8));
+    return report;
+  }
+
+  private static List<String> describe(List<XmlReportParser.SourceFile> sourceFiles) {
+    return sourceFiles.stream()
+      .map(sourceFile -> sourceFile.groupName() + "|" + sourceFile.packageName() + "|" + sourceFile.name() + "|" + sourceFile.lines().stream()
+        .map(line -> line.number() + ":" + line.missedInstrs() + ":" + line.coveredInstrs() + ":" + line.missedBranches() + ":" + line.coveredBranches())
+        .collect(Collectors.joining(",")))
+      .collect(Collectors.toList());
+  }
+}
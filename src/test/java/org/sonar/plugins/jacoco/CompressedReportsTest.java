@@ -0,0 +1,144 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompressedReportsTest {
+
+  @TempDir
+  Path temp;
+
+  private Path load(String name) throws URISyntaxException {
+    return Paths.get(this.getClass().getClassLoader().getResource(name).toURI());
+  }
+
+  @Test
+  void should_recognize_compressed_reports() {
+    assertThat(CompressedReports.isCompressed(Paths.get("build", "jacoco.xml.gz"))).isTrue();
+    assertThat(CompressedReports.isCompressed(Paths.get("build", "coverage.ZIP!", "jacoco.xml"))).isTrue();
+    assertThat(CompressedReports.isCompressed(Paths.get("build", "jacoco.xml"))).isFalse();
+    assertThat(CompressedReports.isCompressed(Paths.get("build", "coverage.zip"))).isFalse();
+    assertThat(CompressedReports.isCompressed(Paths.get("build", "coverage.zip!"))).isFalse();
+  }
+
+  @Test
+  void should_locate_archive_separator() {
+    assertThat(CompressedReports.indexOfArchiveSeparator("coverage.zip!/module-a/jacoco.xml")).isEqualTo(12);
+    assertThat(CompressedReports.indexOfArchiveSeparator("out/all.jar!/jacoco.xml")).isEqualTo(11);
+    assertThat(CompressedReports.indexOfArchiveSeparator("wow!/jacoco.xml")).isEqualTo(-1);
+    assertThat(CompressedReports.indexOfArchiveSeparator("build/jacoco.xml")).isEqualTo(-1);
+  }
+
+  @ParameterizedTest
+  @EnumSource(ImportSettings.Parser.class)
+  void should_parse_gzip_compressed_reports(ImportSettings.Parser parser) throws Exception {
+    Path report = load("jacoco.xml");
+    Path compressed = temp.resolve("jacoco.xml.gz");
+    try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+      Files.copy(report, output);
+    }
+
+    assertThat(describe(parse(compressed, parser))).isEqualTo(describe(parse(report, parser)));
+  }
+
+  @ParameterizedTest
+  @EnumSource(ImportSettings.Parser.class)
+  void should_parse_reports_within_zip_archives(ImportSettings.Parser parser) throws Exception {
+    Path report = load("jacoco.xml");
+    zip(report);
+
+    Path entry = temp.resolve("coverage.zip!").resolve("module-a").resolve("jacoco.xml");
+    assertThat(describe(parse(entry, parser))).isEqualTo(describe(parse(report, parser)));
+    Path compressedEntry = temp.resolve("coverage.zip!").resolve("module-b").resolve("jacoco.xml.gz");
+    assertThat(describe(parse(compressedEntry, parser))).isEqualTo(describe(parse(report, parser)));
+  }
+
+  @Test
+  void should_list_matching_entries_of_archives() throws Exception {
+    Path archive = zip(load("jacoco.xml"));
+
+    assertThat(CompressedReports.entries(archive, "**/jacoco.xml*")).containsExactly(
+      temp.resolve("coverage.zip!").resolve("module-a/jacoco.xml"),
+      temp.resolve("coverage.zip!").resolve("module-b/jacoco.xml.gz"));
+    assertThat(CompressedReports.entries(archive, "module-a/jacoco.xml")).containsExactly(temp.resolve("coverage.zip!").resolve("module-a/jacoco.xml"));
+    assertThat(CompressedReports.entries(archive, "module-c/*")).isEmpty();
+  }
+
+  @Test
+  void should_fail_on_missing_entries() throws Exception {
+    zip(load("jacoco.xml"));
+
+    Path missing = temp.resolve("coverage.zip!").resolve("module-c").resolve("jacoco.xml");
+    assertThrows(NoSuchFileException.class, () -> CompressedReports.open(missing));
+    Path directory = temp.resolve("coverage.zip!").resolve("module-a");
+    assertThrows(NoSuchFileException.class, () -> CompressedReports.open(directory));
+  }
+
+  /**
+   * Creates 'coverage.zip', containing the report as 'module-a/jacoco.xml' and gzip compressed as 'module-b/jacoco.xml.gz'.
+   */
+  private Path zip(Path report) throws IOException {
+    Path archive = temp.resolve("coverage.zip");
+    try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(archive))) {
+      output.putNextEntry(new ZipEntry("module-a/"));
+      output.closeEntry();
+      output.putNextEntry(new ZipEntry("module-a/jacoco.xml"));
+      Files.copy(report, output);
+      output.closeEntry();
+      output.putNextEntry(new ZipEntry("module-b/jacoco.xml.gz"));
+      GZIPOutputStream gzip = new GZIPOutputStream(output);
+      Files.copy(report, gzip);
+      gzip.finish();
+      output.closeEntry();
+    }
+    return archive;
+  }
+
+  private static List<XmlReportParser.SourceFile> parse(Path report, ImportSettings.Parser parser) {
+    return new XmlReportParser(report, ImportSettings.defaults().setParser(parser)).parse();
+  }
+
+  private static List<String> describe(List<XmlReportParser.SourceFile> sourceFiles) {
+    return sourceFiles.stream()
+      .map(sourceFile -> sourceFile.packageName() + "/" + sourceFile.name() + ":" + sourceFile.lines().stream()
+        .map(line -> line.number() + ":" + line.missedInstrs() + ":" + line.coveredInstrs() + ":" + line.missedBranches() + ":" + line.coveredBranches())
+        .collect(Collectors.joining(",")))
+      .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.sonar.api.batch.sensor.coverage.NewCoverage;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class CoverageAccumulatorTest {
+
+  @Test
+  void covers_lines_covered_by_any_report_and_keeps_the_maximum_of_conditions() {
+    XmlReportParser.SourceFile unitTests = new XmlReportParser.SourceFile("package", "File.java");
+    unitTests.addLine(1, 0, 2, 0, 0);
+    unitTests.addLine(2, 1, 1, 3, 1);
+    unitTests.addLine(3, 2, 0, 0, 0);
+    XmlReportParser.SourceFile integrationTests = new XmlReportParser.SourceFile("package", "File.java");
+    integrationTests.addLine(1, 0, 2, 0, 0);
+    integrationTests.addLine(2, 0, 2, 1, 3);
+    integrationTests.addLine(3, 2, 0, 0, 0);
+    integrationTests.addLine(40, 1, 0, 0, 0);
+
+    CoverageAccumulator accumulator = new CoverageAccumulator();
+    accumulator.add(unitTests);
+    accumulator.add(integrationTests);
+    NewCoverage newCoverage = mock(NewCoverage.class);
+    accumulator.saveTo(newCoverage);
+
+    InOrder inOrder = inOrder(newCoverage);
+    inOrder.verify(newCoverage).lineHits(1, 1);
+    inOrder.verify(newCoverage).conditions(2, 4, 3);
+    inOrder.verify(newCoverage).lineHits(2, 1);
+    inOrder.verify(newCoverage).lineHits(3, 0);
+    inOrder.verify(newCoverage).lineHits(40, 0);
+    inOrder.verify(newCoverage).save();
+    verify(newCoverage, never()).lineHits(4, 0);
+    verify(newCoverage, never()).conditions(1, 0, 0);
+  }
+
+  @Test
+  void lines_without_code_are_not_saved() {
+    XmlReportParser.SourceFile sourceFile = new XmlReportParser.SourceFile("package", "File.java");
+    sourceFile.addLine(5, 0, 0, 0, 0);
+
+    CoverageAccumulator accumulator = new CoverageAccumulator();
+    accumulator.add(sourceFile);
+    NewCoverage newCoverage = mock(NewCoverage.class);
+    accumulator.saveTo(newCoverage);
+
+    verify(newCoverage, never()).lineHits(anyInt(), anyInt());
+    verify(newCoverage).save();
+  }
+
+  @Test
+  void branches_of_lines_reported_out_of_order_are_merged() {
+    XmlReportParser.SourceFile first = new XmlReportParser.SourceFile("package", "File.java");
+    first.addLine(10, 0, 1, 1, 1);
+    first.addLine(30, 0, 1, 2, 0);
+    XmlReportParser.SourceFile second = new XmlReportParser.SourceFile("package", "File.java");
+    second.addLine(30, 0, 1, 0, 2);
+    second.addLine(20, 0, 1, 0, 4);
+    second.addLine(10, 0, 1, 2, 0);
+
+    CoverageAccumulator accumulator = new CoverageAccumulator();
+    accumulator.add(first);
+    accumulator.add(second);
+    NewCoverage newCoverage = mock(NewCoverage.class);
+    accumulator.saveTo(newCoverage);
+
+    InOrder inOrder = inOrder(newCoverage);
+    inOrder.verify(newCoverage).conditions(10, 2, 1);
+    inOrder.verify(newCoverage).conditions(20, 4, 4);
+    inOrder.verify(newCoverage).conditions(30, 2, 2);
+  }
+}
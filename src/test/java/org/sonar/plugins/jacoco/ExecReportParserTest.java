@@ -0,0 +1,181 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.runtime.IRuntime;
+import org.jacoco.core.runtime.LoggerRuntime;
+import org.jacoco.core.runtime.RuntimeData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExecReportParserTest {
+
+  @TempDir
+  Path temp;
+
+  @Test
+  void coverage_is_computed_from_execution_data_and_class_files() throws Exception {
+    Path classes = copyClassFile(Target.class);
+    Path exec = recordExecution(Target.class);
+
+    ExecReportParser parser = new ExecReportParser(List.of(classes), 1, new NameTable());
+    parser.load(exec);
+    List<XmlReportParser.SourceFile> sourceFiles = new ArrayList<>();
+    parser.parse(sourceFiles::add);
+
+    assertThat(sourceFiles).hasSize(1);
+    XmlReportParser.SourceFile sourceFile = sourceFiles.get(0);
+    assertThat(sourceFile.packageName()).isEqualTo("org/sonar/plugins/jacoco");
+    assertThat(sourceFile.name()).isEqualTo("ExecReportParserTest.java");
+    assertThat(sourceFile.lines()).anySatisfy(line -> {
+      assertThat(line.missedBranches()).isEqualTo(1);
+      assertThat(line.coveredBranches()).isEqualTo(1);
+    });
+    assertThat(sourceFile.lines()).anySatisfy(line -> {
+      assertThat(line.missedInstrs()).isPositive();
+      assertThat(line.coveredInstrs()).isZero();
+    });
+  }
+
+  @Test
+  void classes_of_one_source_file_analyzed_on_different_threads_are_summed() throws Exception {
+    Path classes = copyClassFile(Target.class);
+    copyClassFile(Target.Nested.class);
+    Path exec = recordExecution(Target.class);
+
+    List<XmlReportParser.SourceFile> sequential = new ArrayList<>();
+    ExecReportParser parser = new ExecReportParser(List.of(classes), 1, new NameTable());
+    parser.load(exec);
+    parser.parse(sequential::add);
+
+    List<XmlReportParser.SourceFile> concurrent = new ArrayList<>();
+    parser = new ExecReportParser(List.of(classes), 4, new NameTable());
+    parser.load(exec);
+    parser.parse(concurrent::add);
+
+    assertThat(concurrent).hasSize(1);
+    assertThat(concurrent.get(0).lines()).isEqualTo(sequential.get(0).lines());
+  }
+
+  @Test
+  void classes_without_execution_data_are_reported_as_missed() throws Exception {
+    Path classes = copyClassFile(Target.class);
+
+    ExecReportParser parser = new ExecReportParser(List.of(classes), 1, new NameTable());
+    parser.load(Files.write(temp.resolve("empty.exec"), new byte[0]));
+    List<XmlReportParser.SourceFile> sourceFiles = new ArrayList<>();
+    parser.parse(sourceFiles::add);
+
+    assertThat(sourceFiles).hasSize(1);
+    assertThat(sourceFiles.get(0).lines()).isNotEmpty().allSatisfy(line -> assertThat(line.coveredInstrs()).isZero());
+  }
+
+  @Test
+  void invalid_execution_data_fails_to_load() throws IOException {
+    Path exec = Files.write(temp.resolve("invalid.exec"), "not execution data".getBytes());
+
+    ExecReportParser parser = new ExecReportParser(List.of(temp), 1, new NameTable());
+    assertThatThrownBy(() -> parser.load(exec)).isInstanceOf(IOException.class);
+  }
+
+  private Path copyClassFile(Class<?> type) throws IOException {
+    Path classes = temp.resolve("classes");
+    Path classFile = classes.resolve(type.getName().replace('.', '/') + ".class");
+    Files.createDirectories(classFile.getParent());
+    try (InputStream input = classBytes(type)) {
+      Files.copy(input, classFile);
+    }
+    return classes;
+  }
+
+  /**
+   * Runs an instrumented copy of the given class, and writes the execution data it recorded.
+   */
+  private Path recordExecution(Class<?> type) throws Exception {
+    IRuntime runtime = new LoggerRuntime();
+    byte[] instrumented;
+    try (InputStream input = classBytes(type)) {
+      instrumented = new Instrumenter(runtime).instrument(input, type.getName());
+    }
+    RuntimeData data = new RuntimeData();
+    runtime.startup(data);
+    try {
+      ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+          if (name.equals(type.getName())) {
+            return defineClass(name, instrumented, 0, instrumented.length);
+          }
+          return super.loadClass(name, resolve);
+        }
+      };
+      ((Runnable) loader.loadClass(type.getName()).getDeclaredConstructor().newInstance()).run();
+    } finally {
+      runtime.shutdown();
+    }
+
+    ExecutionDataStore executionData = new ExecutionDataStore();
+    data.collect(executionData, new SessionInfoStore(), false);
+    Path exec = temp.resolve("jacoco.exec");
+    try (OutputStream output = Files.newOutputStream(exec)) {
+      executionData.accept(new ExecutionDataWriter(output));
+    }
+    return exec;
+  }
+
+  private static InputStream classBytes(Class<?> type) {
+    return type.getResourceAsStream("/" + type.getName().replace('.', '/') + ".class");
+  }
+
+  public static class Target implements Runnable {
+    @Override
+    public void run() {
+      isPositive(1);
+    }
+
+    static boolean isPositive(int value) {
+      return value > 0;
+    }
+
+    void neverCalled() {
+      isPositive(-1);
+    }
+
+    static class Nested {
+      int neverCalled() {
+        return 42;
+      }
+    }
+  }
+}
@@ -21,6 +21,8 @@ package org.sonar.plugins.jacoco;
 
 import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
@@ -31,9 +33,11 @@ import org.junit.jupiter.api.io.TempDir;
 import org.sonar.api.batch.fs.InputFile;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -84,6 +88,40 @@ class FileLocatorTest {
     assertThat(locator.getInputFile("org/sonar/test", "File.kt")).isEqualTo(inputFile);
   }
 
+  @Test
+  void should_look_up_each_file_once() {
+    InputFile inputFile = new TestInputFileBuilder("module1", "src/main/java/org/sonar/test/File.java").build();
+    KotlinFileLocator kotlinFileLocatorMock = mock(KotlinFileLocator.class);
+    ModuleFileLocator locator = new ModuleFileLocator(Collections.singleton(inputFile), kotlinFileLocatorMock);
+
+    assertThat(locator.getInputFile("org/sonar/test", "File.java")).isEqualTo(inputFile);
+    assertThat(locator.getInputFile("org/sonar/test", "File.java")).isEqualTo(inputFile);
+    assertThat(locator.getInputFile("org/sonar/test", "Missing.kt")).isNull();
+    assertThat(locator.getInputFile("org/sonar/test", "Missing.kt")).isNull();
+
+    verify(kotlinFileLocatorMock, times(1)).getInputFile("org/sonar/test", "Missing.kt");
+  }
+
+  @Test
+  void files_already_looked_up_are_found_without_allocating() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean allocationCounting = (com.sun.management.ThreadMXBean) threads;
+    assumeTrue(allocationCounting.isThreadAllocatedMemorySupported() && allocationCounting.isThreadAllocatedMemoryEnabled());
+    InputFile inputFile = new TestInputFileBuilder("module1", "src/main/java/org/sonar/test/File.java").build();
+    ModuleFileLocator locator = new ModuleFileLocator(Collections.singleton(inputFile), kotlinFileLocator);
+    locator.getInputFile(null, "org/sonar/test", "File.java");
+    locator.getInputFile(null, "org/sonar/test", "Missing.java");
+
+    long before = allocationCounting.getThreadAllocatedBytes(Thread.currentThread().getId());
+    for (int i = 0; i < 100_000; i++) {
+      locator.getInputFile(null, "org/sonar/test", i % 2 == 0 ? "File.java" : "Missing.java");
+    }
+    long allocated = allocationCounting.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+    assertThat(allocated).isLessThan(1024);
+  }
+
   @Test
   void should_not_fallback_on_Kotlin_file_locator_if_file_is_not_Kotlin() {
     InputFile inputFile = new TestInputFileBuilder("module1", "src/main/kotlin/File.java").build();
@@ -0,0 +1,154 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.slf4j.event.Level;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.testfixtures.log.LogTesterJUnit5;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ImportSettingsTest {
+
+  @RegisterExtension
+  public LogTesterJUnit5 logTester = new LogTesterJUnit5();
+
+  private final Configuration config = mock(Configuration.class);
+
+  @Test
+  void defaults_to_stax_parser() {
+    when(config.get(anyString())).thenReturn(Optional.empty());
+
+    assertThat(ImportSettings.from(config).parser()).isEqualTo(ImportSettings.Parser.STAX);
+    assertThat(ImportSettings.defaults().parser()).isEqualTo(ImportSettings.Parser.STAX);
+  }
+
+  @Test
+  void reads_parser_from_configuration() {
+    when(config.get(anyString())).thenReturn(Optional.empty());
+    when(config.get(ImportSettings.PARSER_PROPERTY_KEY)).thenReturn(Optional.of(" Bytes "));
+
+    assertThat(ImportSettings.from(config).parser()).isEqualTo(ImportSettings.Parser.BYTES);
+  }
+
+  @Test
+  void falls_back_to_stax_parser_on_unknown_value() {
+    when(config.get(anyString())).thenReturn(Optional.empty());
+    when(config.get(ImportSettings.PARSER_PROPERTY_KEY)).thenReturn(Optional.of("sax"));
+
+    assertThat(ImportSettings.from(config).parser()).isEqualTo(ImportSettings.Parser.STAX);
+    assertThat(logTester.logs(Level.WARN)).containsExactly("Unknown value 'sax' for 'sonar.coverage.jacoco.xmlParser', falling back to 'stax'");
+  }
+
+  @Test
+  void defaults_to_one_parser_thread_per_processor() {
+    when(config.get(anyString())).thenReturn(Optional.empty());
+
+    assertThat(ImportSettings.from(config).parserThreads()).isEqualTo(Runtime.getRuntime().availableProcessors());
+  }
+
+  @Test
+  void reads_parser_threads_from_configuration() {
+    when(config.get(anyString())).thenReturn(Optional.empty());
+    when(config.get(ImportSettings.PARSER_THREADS_PROPERTY_KEY)).thenReturn(Optional.of("3"), Optional.of("0"));
+
+    assertThat(ImportSettings.from(config).parserThreads()).isEqualTo(3);
+    assertThat(ImportSettings.from(config).parserThreads()).isEqualTo(1);
+  }
+
+  @Test
+  void reads_import_threads_from_configuration() {
+    when(config.get(anyString())).thenReturn(Optional.empty());
+    assertThat(ImportSettings.from(config).importThreads()).isEqualTo(1);
+    assertThat(ImportSettings.defaults().importThreads()).isEqualTo(1);
+
+    when(config.get(ImportSettings.IMPORT_THREADS_PROPERTY_KEY)).thenReturn(Optional.of(" 2 "), Optional.of("all"));
+    assertThat(ImportSettings.from(config).importThreads()).isEqualTo(2);
+    assertThat(ImportSettings.from(config).importThreads()).isEqualTo(1);
+    assertThat(logTester.logs(Level.WARN)).containsExactly("Invalid value 'all' for 'sonar.coverage.jacoco.importThreads', falling back to 1");
+  }
+
+  @Test
+  void reads_changed_files_only_from_configuration() {
+    when(config.get(anyString())).thenReturn(Optional.empty());
+    assertThat(ImportSettings.from(config).changedFilesOnly()).isFalse();
+
+    when(config.get(ImportSettings.CHANGED_FILES_ONLY_PROPERTY_KEY)).thenReturn(Optional.of("true "));
+    assertThat(ImportSettings.from(config).changedFilesOnly()).isTrue();
+    assertThat(ImportSettings.from(config).copy().changedFilesOnly()).isTrue();
+  }
+
+  @Test
+  void reads_streaming_merge_from_configuration() {
+    when(config.get(anyString())).thenReturn(Optional.empty());
+    assertThat(ImportSettings.from(config).streamingMerge()).isFalse();
+
+    when(config.get(ImportSettings.STREAMING_MERGE_PROPERTY_KEY)).thenReturn(Optional.of("true"));
+    assertThat(ImportSettings.from(config).streamingMerge()).isTrue();
+    assertThat(ImportSettings.from(config).copy().streamingMerge()).isTrue();
+  }
+
+  @Test
+  void reads_index_all_files_from_configuration() {
+    when(config.get(anyString())).thenReturn(Optional.empty());
+    assertThat(ImportSettings.from(config).indexAllFiles()).isFalse();
+
+    when(config.get(ImportSettings.INDEX_ALL_FILES_PROPERTY_KEY)).thenReturn(Optional.of("true"));
+    assertThat(ImportSettings.from(config).indexAllFiles()).isTrue();
+    assertThat(ImportSettings.from(config).copy().indexAllFiles()).isTrue();
+  }
+
+  @Test
+  void reads_report_slicing_from_configuration() {
+    when(config.get(anyString())).thenReturn(Optional.empty());
+    assertThat(ImportSettings.from(config).reportSlicing()).isFalse();
+
+    when(config.get(ImportSettings.REPORT_SLICING_PROPERTY_KEY)).thenReturn(Optional.of("true"));
+    assertThat(ImportSettings.from(config).reportSlicing()).isTrue();
+    assertThat(ImportSettings.from(config).copy().reportSlicing()).isTrue();
+  }
+
+  @Test
+  void reads_report_cache_size_in_megabytes() {
+    when(config.get(anyString())).thenReturn(Optional.empty());
+    assertThat(ImportSettings.from(config).reportCacheBytes()).isEqualTo(Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 4));
+
+    when(config.get(ImportSettings.REPORT_CACHE_SIZE_PROPERTY_KEY)).thenReturn(Optional.of("16"), Optional.of("-1"));
+    assertThat(ImportSettings.from(config).reportCacheBytes()).isEqualTo(16L << 20);
+    assertThat(ImportSettings.from(config).reportCacheBytes()).isZero();
+  }
+
+  @Test
+  void falls_back_to_default_parser_threads_on_invalid_value() {
+    when(config.get(anyString())).thenReturn(Optional.empty());
+    when(config.get(ImportSettings.PARSER_THREADS_PROPERTY_KEY)).thenReturn(Optional.of("many"));
+
+    int processors = Runtime.getRuntime().availableProcessors();
+    assertThat(ImportSettings.from(config).parserThreads()).isEqualTo(processors);
+    assertThat(logTester.logs(Level.WARN))
+      .containsExactly("Invalid value 'many' for 'sonar.coverage.jacoco.xmlParserThreads', falling back to " + processors);
+  }
+}
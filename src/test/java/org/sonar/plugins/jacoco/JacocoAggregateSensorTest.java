@@ -20,21 +20,28 @@
 package org.sonar.plugins.jacoco;
 
 import com.sonarsource.scanner.engine.sensor.test.fixtures.SensorContextTester;
+import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
 import java.nio.file.Path;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.event.Level;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.notifications.AnalysisWarnings;
 import org.sonar.api.testfixtures.log.LogTesterJUnit5;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class JacocoAggregateSensorTest {
   private static final String NO_REPORT_TO_IMPORT_LOG_MESSAGE = "No aggregate XML report found. No coverage coverage information will be added at project level.";
@@ -121,4 +128,29 @@ class JacocoAggregateSensorTest {
     assertThat(logTester.logs(Level.ERROR)).isEmpty();
   }
 
+  @Test
+  void reuses_the_files_indexed_by_the_sensors_of_the_modules() {
+    Path report = Path.of("src", "test", "resources", "jacoco.xml");
+    context.settings()
+            .setProperty("sonar.moduleKey", "module")
+            .setProperty(ReportPathsProvider.AGGREGATE_REPORT_PATHS_PROPERTY_KEY, report.toAbsolutePath().toString());
+    InputFile inputFile = TestInputFileBuilder
+            .create("module", "org/sonarlint/cli/Main.java")
+            .setLines(1000)
+            .build();
+    context.fileSystem().add(inputFile);
+    ProjectCoverageContext projectCoverageContext = spy(new ProjectCoverageContext());
+    ProjectFileIndex fileIndex = spy(projectCoverageContext.getFileIndex());
+    when(projectCoverageContext.getFileIndex()).thenReturn(fileIndex);
+
+    // The module has no report of its own, but its files are still added to the index of the project
+    new JacocoSensor(projectCoverageContext, analysisWarnings).execute(context);
+    verify(fileIndex).addModule(any(), eq(List.of(inputFile)), isNull());
+
+    new JacocoAggregateSensor(projectCoverageContext, analysisWarnings).execute(context);
+    verify(fileIndex).tree();
+    assertThat(context.lineHits(inputFile.key(), 110)).isEqualTo(1);
+    assertThat(logTester.logs(Level.WARN)).doesNotContain("File 'Main.java' not found in project sources");
+  }
+
 }
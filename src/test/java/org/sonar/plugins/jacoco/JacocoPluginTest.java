@@ -39,7 +39,7 @@ class JacocoPluginTest {
     plugin.define(ctx);
 
     ArgumentCaptor<Object> arg = ArgumentCaptor.forClass(Object.class);
-    verify(ctx, times(5)).addExtension(arg.capture());
+    verify(ctx, times(14)).addExtension(arg.capture());
     verifyNoMoreInteractions(ctx);
 
     assertThat(arg.getAllValues().get(0)).isEqualTo(ProjectCoverageContext.class);
@@ -52,7 +52,8 @@ class JacocoPluginTest {
     assertThat(multiValueReportPaths.type()).isEqualTo(PropertyType.STRING);
     assertThat(multiValueReportPaths.category()).isEqualTo("JaCoCo");
     assertThat(multiValueReportPaths.description()).isEqualTo("Paths to JaCoCo XML coverage report files. Each path can be either absolute or relative" +
-            " to the project base directory. Wildcard patterns are accepted (*, ** and ?).");
+            " to the project base directory. Wildcard patterns are accepted (*, ** and ?). Gzip compressed reports (*.gz)" +
+            " and reports within zip archives (archive.zip!/path/to/report.xml) are read as well.");
     assertThat(multiValueReportPaths.configScopes()).containsOnly(PropertyDefinition.ConfigScope.PROJECT);
 
     assertThat(arg.getAllValues().get(3)).isEqualTo(JacocoAggregateSensor.class);
@@ -62,7 +63,70 @@ class JacocoPluginTest {
     assertThat(aggregateReportPaths.multiValues()).isTrue();
     assertThat(aggregateReportPaths.category()).isEqualTo("JaCoCo");
     assertThat(aggregateReportPaths.description()).isEqualTo("Paths to JaCoCo XML aggregate coverage report files. Each path can be either absolute or relative" +
-            " to the project base directory. Wildcard patterns are accepted (*, ** and ?).");
+            " to the project base directory. Wildcard patterns are accepted (*, ** and ?). Gzip compressed reports (*.gz)" +
+            " and reports within zip archives (archive.zip!/path/to/report.xml) are read as well.");
     assertThat(aggregateReportPaths.configScopes()).containsOnly(PropertyDefinition.ConfigScope.PROJECT);
+
+    PropertyDefinition xmlParser = (PropertyDefinition) arg.getAllValues().get(5);
+    assertThat(xmlParser.key()).isEqualTo("sonar.coverage.jacoco.xmlParser");
+    assertThat(xmlParser.type()).isEqualTo(PropertyType.SINGLE_SELECT_LIST);
+    assertThat(xmlParser.options()).containsExactly("stax", "bytes");
+    assertThat(xmlParser.defaultValue()).isEqualTo("stax");
+    assertThat(xmlParser.category()).isEqualTo("JaCoCo");
+    assertThat(xmlParser.configScopes()).containsOnly(PropertyDefinition.ConfigScope.PROJECT);
+
+    PropertyDefinition xmlParserThreads = (PropertyDefinition) arg.getAllValues().get(6);
+    assertThat(xmlParserThreads.key()).isEqualTo("sonar.coverage.jacoco.xmlParserThreads");
+    assertThat(xmlParserThreads.type()).isEqualTo(PropertyType.INTEGER);
+    assertThat(xmlParserThreads.category()).isEqualTo("JaCoCo");
+    assertThat(xmlParserThreads.configScopes()).containsOnly(PropertyDefinition.ConfigScope.PROJECT);
+
+    PropertyDefinition importThreads = (PropertyDefinition) arg.getAllValues().get(7);
+    assertThat(importThreads.key()).isEqualTo("sonar.coverage.jacoco.importThreads");
+    assertThat(importThreads.type()).isEqualTo(PropertyType.INTEGER);
+    assertThat(importThreads.defaultValue()).isEqualTo("1");
+    assertThat(importThreads.category()).isEqualTo("JaCoCo");
+    assertThat(importThreads.configScopes()).containsOnly(PropertyDefinition.ConfigScope.PROJECT);
+
+    PropertyDefinition execReportPaths = (PropertyDefinition) arg.getAllValues().get(8);
+    assertThat(execReportPaths.key()).isEqualTo("sonar.coverage.jacoco.execReportPaths");
+    assertThat(execReportPaths.type()).isEqualTo(PropertyType.STRING);
+    assertThat(execReportPaths.multiValues()).isTrue();
+    assertThat(execReportPaths.category()).isEqualTo("JaCoCo");
+    assertThat(execReportPaths.configScopes()).containsOnly(PropertyDefinition.ConfigScope.PROJECT);
+
+    PropertyDefinition changedFilesOnly = (PropertyDefinition) arg.getAllValues().get(9);
+    assertThat(changedFilesOnly.key()).isEqualTo("sonar.coverage.jacoco.changedFilesOnly");
+    assertThat(changedFilesOnly.type()).isEqualTo(PropertyType.BOOLEAN);
+    assertThat(changedFilesOnly.defaultValue()).isEqualTo("false");
+    assertThat(changedFilesOnly.category()).isEqualTo("JaCoCo");
+    assertThat(changedFilesOnly.configScopes()).containsOnly(PropertyDefinition.ConfigScope.PROJECT);
+
+    PropertyDefinition streamingMerge = (PropertyDefinition) arg.getAllValues().get(10);
+    assertThat(streamingMerge.key()).isEqualTo("sonar.coverage.jacoco.streamingMerge");
+    assertThat(streamingMerge.type()).isEqualTo(PropertyType.BOOLEAN);
+    assertThat(streamingMerge.defaultValue()).isEqualTo("false");
+    assertThat(streamingMerge.category()).isEqualTo("JaCoCo");
+    assertThat(streamingMerge.configScopes()).containsOnly(PropertyDefinition.ConfigScope.PROJECT);
+
+    PropertyDefinition reportCacheSize = (PropertyDefinition) arg.getAllValues().get(11);
+    assertThat(reportCacheSize.key()).isEqualTo("sonar.coverage.jacoco.reportCacheSize");
+    assertThat(reportCacheSize.type()).isEqualTo(PropertyType.INTEGER);
+    assertThat(reportCacheSize.category()).isEqualTo("JaCoCo");
+    assertThat(reportCacheSize.configScopes()).containsOnly(PropertyDefinition.ConfigScope.PROJECT);
+
+    PropertyDefinition indexAllFiles = (PropertyDefinition) arg.getAllValues().get(12);
+    assertThat(indexAllFiles.key()).isEqualTo("sonar.coverage.jacoco.indexAllFiles");
+    assertThat(indexAllFiles.type()).isEqualTo(PropertyType.BOOLEAN);
+    assertThat(indexAllFiles.defaultValue()).isEqualTo("false");
+    assertThat(indexAllFiles.category()).isEqualTo("JaCoCo");
+    assertThat(indexAllFiles.configScopes()).containsOnly(PropertyDefinition.ConfigScope.PROJECT);
+
+    PropertyDefinition reportSlicing = (PropertyDefinition) arg.getAllValues().get(13);
+    assertThat(reportSlicing.key()).isEqualTo("sonar.coverage.jacoco.reportSlicing");
+    assertThat(reportSlicing.type()).isEqualTo(PropertyType.BOOLEAN);
+    assertThat(reportSlicing.defaultValue()).isEqualTo("false");
+    assertThat(reportSlicing.category()).isEqualTo("JaCoCo");
+    assertThat(reportSlicing.configScopes()).containsOnly(PropertyDefinition.ConfigScope.PROJECT);
   }
 }
@@ -24,14 +24,18 @@ import com.sonarsource.scanner.engine.sensor.test.fixtures.TestFileSystem;
 import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.slf4j.event.Level;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorDescriptor;
@@ -176,6 +180,106 @@ class JacocoSensorTest {
     assertThat(logTester.getLogs(Level.ERROR)).isEmpty();
   }
 
+  @Test
+  void merge_the_coverage_of_xml_reports_and_execution_data() throws IOException {
+    Path classes = temp.resolve("classes");
+    String classFileName = ExecReportParserTest.Target.class.getName().replace('.', '/') + ".class";
+    Path classFile = classes.resolve(classFileName);
+    Files.createDirectories(classFile.getParent());
+    try (InputStream input = ExecReportParserTest.Target.class.getResourceAsStream("/" + classFileName)) {
+      Files.copy(input, classFile);
+    }
+    // Without execution data, all the lines of the classes are missed
+    Path exec = Files.write(temp.resolve("jacoco.exec"), new byte[0]);
+    ExecReportParser execParser = new ExecReportParser(List.of(classes), 1, new NameTable());
+    execParser.load(exec);
+    List<XmlReportParser.Line> lines = new ArrayList<>();
+    execParser.parse(sourceFile -> lines.addAll(sourceFile.lines()));
+    int coveredLine = lines.get(0).number();
+    int missedLine = lines.get(lines.size() - 1).number();
+    Files.writeString(temp.resolve("jacoco.xml"), "<report name=\"r\"><package name=\"org/sonar/plugins/jacoco\">" +
+      "<sourcefile name=\"ExecReportParserTest.java\"><line nr=\"" + coveredLine + "\" mi=\"0\" ci=\"3\" mb=\"0\" cb=\"0\"/></sourcefile>" +
+      "</package></report>");
+
+    MapSettings settings = new MapSettings()
+      .setProperty("sonar.moduleKey", "module")
+      .setProperty("sonar.projectBaseDir", temp.toAbsolutePath().toString())
+      .setProperty(ReportPathsProvider.REPORT_PATHS_PROPERTY_KEY, "jacoco.xml")
+      .setProperty(ReportPathsProvider.EXEC_REPORT_PATHS_PROPERTY_KEY, "jacoco.exec")
+      .setProperty(ReportPathsProvider.CLASS_DIRECTORIES_PROPERTY_KEY, "classes");
+    SensorContextTester tester = SensorContextTester.create(temp);
+    tester.setSettings(settings);
+    InputFile inputFile = TestInputFileBuilder
+      .create("module", "org/sonar/plugins/jacoco/ExecReportParserTest.java")
+      .setLines(1000)
+      .build();
+    tester.fileSystem().add(inputFile);
+
+    sensor.execute(tester);
+
+    assertThat(coveredLine).isNotEqualTo(missedLine);
+    assertThat(tester.lineHits(inputFile.key(), coveredLine)).isEqualTo(1);
+    assertThat(tester.lineHits(inputFile.key(), missedLine)).isZero();
+    assertThat(logTester.logs(Level.WARN)).isEmpty();
+    assertThat(logTester.logs(Level.ERROR)).isEmpty();
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  void index_the_jvm_sources_or_all_the_files(boolean indexAllFiles) throws URISyntaxException, IOException {
+    logTester.setLevel(Level.DEBUG);
+    MapSettings settings = new MapSettings()
+      .setProperty("sonar.moduleKey", "module")
+      .setProperty("sonar.projectBaseDir", temp.toAbsolutePath().toString())
+      .setProperty(ReportPathsProvider.REPORT_PATHS_PROPERTY_KEY, "jacoco.xml")
+      .setProperty(ImportSettings.INDEX_ALL_FILES_PROPERTY_KEY, String.valueOf(indexAllFiles));
+    SensorContextTester tester = SensorContextTester.create(temp);
+    tester.setSettings(settings);
+    InputFile inputFile = TestInputFileBuilder
+      .create("module", "org/sonarlint/cli/Main.java")
+      .setLines(1000)
+      .build();
+    tester.fileSystem().add(inputFile);
+    tester.fileSystem().add(TestInputFileBuilder.create("module", "web/index.js").setLanguage("js").build());
+    Files.copy(load("jacoco.xml"), temp.resolve("jacoco.xml"));
+
+    sensor.execute(tester);
+
+    assertThat(tester.lineHits(inputFile.key(), 110)).isEqualTo(1);
+    assertThat(logTester.logs(Level.DEBUG))
+      .contains("Indexed " + (indexAllFiles ? 2 : 1) + " file(s), of which 0 share their name with other files");
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  void find_the_files_of_other_languages_only_when_all_the_files_are_indexed(boolean indexAllFiles) throws IOException {
+    MapSettings settings = new MapSettings()
+      .setProperty("sonar.moduleKey", "module")
+      .setProperty("sonar.projectBaseDir", temp.toAbsolutePath().toString())
+      .setProperty(ReportPathsProvider.REPORT_PATHS_PROPERTY_KEY, "jacoco.xml")
+      .setProperty(ImportSettings.INDEX_ALL_FILES_PROPERTY_KEY, String.valueOf(indexAllFiles));
+    SensorContextTester tester = SensorContextTester.create(temp);
+    tester.setSettings(settings);
+    InputFile inputFile = TestInputFileBuilder
+      .create("module", "web/script.js")
+      .setLanguage("js")
+      .setLines(10)
+      .build();
+    tester.fileSystem().add(inputFile);
+    Files.writeString(temp.resolve("jacoco.xml"), "<report name=\"r\"><package name=\"web\">" +
+      "<sourcefile name=\"script.js\"><line nr=\"2\" mi=\"0\" ci=\"1\" mb=\"0\" cb=\"0\"/></sourcefile></package></report>");
+
+    sensor.execute(tester);
+
+    if (indexAllFiles) {
+      assertThat(tester.lineHits(inputFile.key(), 2)).isEqualTo(1);
+      assertThat(logTester.logs(Level.WARN)).isEmpty();
+    } else {
+      assertThat(tester.lineHits(inputFile.key(), 2)).isNull();
+      assertThat(logTester.logs(Level.WARN)).containsExactly("File 'script.js' not found in project sources");
+    }
+  }
+
   private Path load(String name) throws URISyntaxException {
     return Paths.get(this.getClass().getClassLoader().getResource(name).toURI());
   }
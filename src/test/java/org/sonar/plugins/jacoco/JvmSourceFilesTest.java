@@ -0,0 +1,54 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JvmSourceFilesTest {
+
+  @Test
+  void files_of_jvm_languages_are_sources() {
+    assertThat(JvmSourceFiles.isJvmSource(file("src/main/java/File.java", "java"))).isTrue();
+    assertThat(JvmSourceFiles.isJvmSource(file("src/main/kotlin/File.kt", "kotlin"))).isTrue();
+    assertThat(JvmSourceFiles.isJvmSource(file("src/main/gosu/File.gsx", "gosu"))).isTrue();
+  }
+
+  @Test
+  void files_with_jvm_extensions_are_sources_without_language() {
+    assertThat(JvmSourceFiles.isJvmSource(file("src/main/scala/File.scala", null))).isTrue();
+    assertThat(JvmSourceFiles.isJvmSource(file("src/main/groovy/File.GROOVY", null))).isTrue();
+    assertThat(JvmSourceFiles.isJvmSource(file("src/main/clojure/file.clj", null))).isTrue();
+  }
+
+  @Test
+  void other_files_are_not_sources() {
+    assertThat(JvmSourceFiles.isJvmSource(file("src/main/resources/application.yaml", "yaml"))).isFalse();
+    assertThat(JvmSourceFiles.isJvmSource(file("src/main/js/app.js", "js"))).isFalse();
+    assertThat(JvmSourceFiles.isJvmSource(file("src/test/resources/data", null))).isFalse();
+  }
+
+  private static InputFile file(String relativePath, String language) {
+    return new TestInputFileBuilder("module1", relativePath).setLanguage(language).build();
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LineSetTest {
+
+  @Test
+  void keeps_lines_sorted_and_unique() {
+    LineSet set = new LineSet();
+    set.add(12);
+    set.add(3);
+    set.add(7);
+    set.add(3);
+
+    assertThat(set.size()).isEqualTo(3);
+    assertThat(set.toArray()).containsExactly(3, 7, 12);
+    assertThat(set.contains(7)).isTrue();
+    assertThat(set.contains(8)).isFalse();
+  }
+
+  @Test
+  void dense_and_sparse_sets_contain_the_same_lines() {
+    Random random = new Random(42);
+    TreeSet<Integer> expected = new TreeSet<>();
+    LineSet dense = new LineSet();
+    LineSet sparse = new LineSet();
+    for (int i = 0; i < 2000; i++) {
+      int line = 1 + random.nextInt(1000);
+      expected.add(line);
+      dense.add(line);
+    }
+    sparse.add(100_000);
+    sparse.add(5);
+
+    assertThat(dense.toArray()).containsExactly(expected.stream().mapToInt(Integer::intValue).toArray());
+    assertThat(dense.size()).isEqualTo(expected.size());
+    assertThat(dense.contains(1001)).isFalse();
+    assertThat(dense.contains(100_000)).isFalse();
+    assertThat(sparse.toArray()).containsExactly(5, 100_000);
+    assertThat(sparse.contains(100_000)).isTrue();
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ModulePackagesTest {
+
+  @Test
+  void packages_are_suffixes_of_the_directories_of_the_files() {
+    Predicate<String> packages = ModulePackages.of(Arrays.asList(
+      inputFile("src/main/java/org/example/a/A.java", "java"),
+      inputFile("src/test/java/org/example/a/ATest.java", "java"),
+      inputFile("Root.java", "java")));
+
+    assertThat(packages)
+      .accepts("", "a", "example/a", "org/example/a", "java/org/example/a", "src/main/java/org/example/a", "test/java/org/example/a")
+      .rejects("org", "org/example", "org/example/b", "xorg/example/a", "rg/example/a");
+  }
+
+  @Test
+  void all_packages_are_accepted_with_kotlin_files() {
+    Predicate<String> packages = ModulePackages.of(Arrays.asList(
+      inputFile("src/main/java/org/example/a/A.java", "java"),
+      inputFile("src/main/kotlin/B.kt", "kotlin")));
+
+    assertThat(packages).accepts("org/example/b", "anything");
+  }
+
+  private static InputFile inputFile(String relativePath, String language) {
+    InputFile inputFile = mock(InputFile.class);
+    when(inputFile.relativePath()).thenReturn(relativePath);
+    when(inputFile.filename()).thenReturn(relativePath.substring(relativePath.lastIndexOf('/') + 1));
+    when(inputFile.language()).thenReturn(language);
+    return inputFile;
+  }
+}
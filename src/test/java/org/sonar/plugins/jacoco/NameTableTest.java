@@ -0,0 +1,56 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NameTableTest {
+
+  private final NameTable names = new NameTable();
+
+  @Test
+  void should_intern_equal_strings() {
+    String name = names.intern(new String("org/example"));
+
+    assertThat(names.intern(new String("org/example"))).isSameAs(name);
+    assertThat(names.intern("org/other")).isNotSameAs(name);
+    assertThat(names.size()).isEqualTo(2);
+  }
+
+  @Test
+  void should_intern_names_from_their_bytes() {
+    NameTable.Utf8Name probe = new NameTable.Utf8Name();
+    byte[] buffer = Arrays.copyOf("Fïle.java".getBytes(StandardCharsets.UTF_8), 64);
+    int length = "Fïle.java".getBytes(StandardCharsets.UTF_8).length;
+
+    String name = names.intern(probe.set(buffer, length));
+    assertThat(name).isEqualTo("Fïle.java");
+
+    // The probe doesn't copy the bytes, so reusing its buffer must not alter the interned names
+    Arrays.fill(buffer, (byte) 'x');
+    assertThat(names.intern(probe.set(buffer, 3))).isEqualTo("xxx");
+    assertThat(names.intern(probe.set("Fïle.java".getBytes(StandardCharsets.UTF_8), length))).isSameAs(name);
+    assertThat(names.intern(new String("Fïle.java"))).isSameAs(name);
+  }
+}
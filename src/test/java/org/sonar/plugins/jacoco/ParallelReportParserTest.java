@@ -0,0 +1,154 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParallelReportParserTest {
+
+  @TempDir
+  Path temp;
+
+  @Test
+  void should_produce_the_same_source_files_in_the_same_order_as_sequential_parsing() throws IOException {
+    Path report = write(generateReport(null));
+
+    List<XmlReportParser.SourceFile> sourceFiles = parseInParallel(report);
+
+    assertThat(sourceFiles).hasSize(3 * 40 * 10);
+    assertThat(describe(sourceFiles)).isEqualTo(describe(parseSequentially(report)));
+    assertThat(sourceFiles.get(0).groupName()).isNull();
+    assertThat(sourceFiles.get(0).packageName()).isEqualTo("org/example/p0");
+    assertThat(sourceFiles.get(sourceFiles.size() - 1).groupName()).isEqualTo("module2");
+    assertThat(sourceFiles.get(sourceFiles.size() - 1).packageName()).isEqualTo("org/example/p119");
+  }
+
+  @Test
+  void should_locate_packages_with_their_group() throws IOException {
+    Path report = write("<report name=\"r\">\n<sessioninfo id=\"s\"/>\n" +
+      "<package name=\"a\"><sourcefile name=\"A.java\"><line nr=\"1\" mi=\"0\" ci=\"1\" mb=\"0\" cb=\"0\"/></sourcefile></package>\n" +
+      "<group name=\"g\"><package name=\"b\"/><counter type=\"LINE\" missed=\"0\" covered=\"1\"/></group>\n" +
+      "</report>");
+
+    List<ByteXmlReportScanner.PackageRange> ranges;
+    try (ReportInput input = ReportInput.open(report)) {
+      ranges = new ByteXmlReportScanner(input).scanPackageRanges();
+    }
+
+    String content = Files.readString(report);
+    assertThat(ranges).hasSize(2);
+    assertThat(content.substring((int) ranges.get(0).start, (int) ranges.get(0).end)).startsWith("<package name=\"a\">").endsWith("</package>");
+    assertThat(ranges.get(0).groupName).isNull();
+    assertThat(ranges.get(0).lineNumber).isEqualTo(3);
+    assertThat(content.substring((int) ranges.get(1).start, (int) ranges.get(1).end)).isEqualTo("<package name=\"b\"/>");
+    assertThat(ranges.get(1).groupName).isEqualTo("g");
+  }
+
+  @Test
+  void should_group_consecutive_packages_in_batches() throws IOException {
+    Path report = write(generateReport(null));
+    List<ByteXmlReportScanner.PackageRange> ranges;
+    try (ReportInput input = ReportInput.open(report)) {
+      ranges = new ByteXmlReportScanner(input).scanPackageRanges();
+    }
+
+    List<List<ByteXmlReportScanner.PackageRange>> batches = ParallelReportParser.batches(ranges, 4);
+
+    assertThat(batches).hasSizeGreaterThan(1);
+    assertThat(batches.stream().flatMap(List::stream).collect(Collectors.toList())).containsExactlyElementsOf(ranges);
+  }
+
+  @Test
+  void should_report_the_first_error_of_the_report() throws IOException {
+    Path report = write(generateReport("org/example/p70"));
+
+    IllegalStateException expected = assertThrows(IllegalStateException.class, () -> parseSequentially(report));
+    IllegalStateException actual = assertThrows(IllegalStateException.class, () -> parseInParallel(report));
+
+    assertThat(actual.getMessage()).isEqualTo(expected.getMessage()).contains("'File0.java'");
+  }
+
+  private Path write(String content) throws IOException {
+    Path report = temp.resolve("report.xml");
+    Files.write(report, content.getBytes(StandardCharsets.UTF_8));
+    return report;
+  }
+
+  /**
+   * About 3 MB of packages, spread over the report itself and two groups.
+   */
+  private static String generateReport(String invalidPackage) {
+    StringBuilder content = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<report name=\"parallel\">\n");
+    int packageIndex = 0;
+    for (String group : new String[] {null, "module1", "module2"}) {
+      if (group != null) {
+        content.append("<group name=\"").append(group).append("\">\n");
+      }
+      for (int p = 0; p < 40; p++, packageIndex++) {
+        String packageName = "org/example/p" + packageIndex;
+        content.append("<package name=\"").append(packageName).append("\">\n");
+        content.append("<class name=\"").append(packageName).append("/Skipped\"><method name=\"m\" desc=\"()V\" line=\"1\"/></class>\n");
+        for (int file = 0; file < 10; file++) {
+          content.append("<sourcefile name=\"File").append(file).append(".java\">\n");
+          for (int line = 1; line <= 100; line++) {
+            String nr = packageName.equals(invalidPackage) && line == 50 ? "x" : Integer.toString(line);
+            content.append("<line nr=\"").append(nr).append("\" mi=\"").append(line % 3).append("\" ci=\"").append(packageIndex)
+              .append("\" mb=\"0\" cb=\"").append(file).append("\"/>\n");
+          }
+          content.append("</sourcefile>\n");
+        }
+        content.append("<counter type=\"LINE\" missed=\"1\" covered=\"2\"/>\n</package>\n");
+      }
+      if (group != null) {
+        content.append("</group>\n");
+      }
+    }
+    return content.append("</report>\n").toString();
+  }
+
+  private static List<XmlReportParser.SourceFile> parseInParallel(Path report) throws IOException {
+    List<XmlReportParser.SourceFile> sourceFiles = new ArrayList<>();
+    new ParallelReportParser(report, 4, new NameTable()).parse(sourceFiles::add);
+    return sourceFiles;
+  }
+
+  private static List<XmlReportParser.SourceFile> parseSequentially(Path report) {
+    return new XmlReportParser(report, ImportSettings.defaults().setParser(ImportSettings.Parser.BYTES).setParserThreads(1)).parse();
+  }
+
+  private static List<String> describe(List<XmlReportParser.SourceFile> sourceFiles) {
+    return sourceFiles.stream()
+      .map(sourceFile -> sourceFile.groupName() + "|" + sourceFile.packageName() + "|" + sourceFile.name() + "|" + sourceFile.lines().stream()
+        .map(line -> line.number() + ":" + line.missedInstrs() + ":" + line.coveredInstrs() + ":" + line.missedBranches() + ":" + line.coveredBranches())
+        .collect(Collectors.joining(",")))
+      .collect(Collectors.toList());
+  }
+}
@@ -46,4 +46,20 @@ class ProjectCoverageContextTest {
 
     assertThat(projectCoverageContext.getModuleContexts()).containsOnly(moduleCoverageContext);
   }
-}
\ No newline at end of file
+
+  @Test
+  void file_index_is_shared_by_all_the_modules() {
+    ProjectCoverageContext projectCoverageContext = new ProjectCoverageContext();
+
+    assertThat(projectCoverageContext.getFileIndex()).isSameAs(projectCoverageContext.getFileIndex());
+    assertThat(projectCoverageContext.getFileIndex().tree().fileCount()).isZero();
+  }
+
+  @Test
+  void report_cache_is_shared_by_all_the_modules() {
+    ProjectCoverageContext projectCoverageContext = new ProjectCoverageContext();
+
+    assertThat(projectCoverageContext.getReportCache()).isSameAs(projectCoverageContext.getReportCache());
+    assertThat(projectCoverageContext.getReportCache().size()).isZero();
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProjectFileIndexTest {
+
+  private final ModuleCoverageContext app = module("app");
+  private final ModuleCoverageContext utils = module("utils");
+  private final InputFile appFile = new TestInputFileBuilder("project", "app/src/main/java/org/example/App.java").build();
+  private final InputFile utilsFile = new TestInputFileBuilder("project", "utils/src/main/java/org/example/Utils.java").build();
+
+  @Test
+  void module_lookups_are_restricted_to_the_files_of_the_module() {
+    ProjectFileIndex index = new ProjectFileIndex();
+
+    ModuleFileLocator appLocator = new ModuleFileLocator(List.of(appFile), null, index, app);
+    ModuleFileLocator utilsLocator = new ModuleFileLocator(List.of(utilsFile), null, index, utils);
+
+    assertThat(appLocator.getInputFile("org/example", "App.java")).isSameAs(appFile);
+    assertThat(appLocator.getInputFile("org/example", "Utils.java")).isNull();
+    assertThat(utilsLocator.getInputFile("org/example", "Utils.java")).isSameAs(utilsFile);
+    assertThat(utilsLocator.getInputFile("org/example", "App.java")).isNull();
+  }
+
+  @Test
+  void project_lookups_reuse_the_files_added_by_the_modules() {
+    ProjectFileIndex index = new ProjectFileIndex();
+    new ModuleFileLocator(List.of(appFile), null, index, app);
+    index.addModule(utils, List.of(utilsFile), null);
+
+    assertThat(index.covers(List.of(appFile, utilsFile))).isTrue();
+    ProjectFileLocator locator = new ProjectFileLocator(index, null, new ProjectCoverageContext());
+    assertThat(locator.getInputFile(null, "org/example", "App.java")).isSameAs(appFile);
+    assertThat(locator.getInputFile(null, "org/example", "Utils.java")).isSameAs(utilsFile);
+  }
+
+  @Test
+  void files_of_a_module_are_added_once() {
+    ProjectFileIndex index = new ProjectFileIndex();
+    index.addModule(app, List.of(appFile), null);
+    ModuleFileLocator locator = new ModuleFileLocator(List.of(appFile), null, index, app);
+
+    assertThat(index.tree().fileCount()).isEqualTo(1);
+    assertThat(index.covers(List.of(appFile))).isTrue();
+    assertThat(locator.getInputFile("org/example", "App.java")).isSameAs(appFile);
+  }
+
+  @Test
+  void does_not_cover_the_files_of_modules_which_were_not_added() {
+    ProjectFileIndex index = new ProjectFileIndex();
+    assertThat(index.covers(List.of())).isFalse();
+
+    index.addModule(app, List.of(appFile), null);
+
+    assertThat(index.covers(List.of(appFile, utilsFile))).isFalse();
+  }
+
+  private static ModuleCoverageContext module(String name) {
+    Path baseDir = Paths.get(name);
+    return new ModuleCoverageContext(name, baseDir, List.of(baseDir.resolve("src/main/java")));
+  }
+}
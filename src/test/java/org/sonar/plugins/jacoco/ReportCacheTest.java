@@ -0,0 +1,161 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReportCacheTest {
+
+  @TempDir
+  Path temp;
+
+  private final AtomicInteger parsed = new AtomicInteger();
+
+  @Test
+  void report_is_parsed_once_for_all_the_other_modules() throws IOException {
+    Path report = copy("jacoco.xml");
+    ReportCache cache = new ReportCache(1 << 20);
+    ImportSettings settings = ImportSettings.defaults().setReportCache(cache);
+
+    List<XmlReportParser.SourceFile> first = parse(cache, report);
+    assertThat(cache.size()).isZero();
+    List<XmlReportParser.SourceFile> second = parse(cache, report);
+    List<XmlReportParser.SourceFile> third = new XmlReportParser(temp.resolve(".").resolve("jacoco.xml"), settings).parse();
+    List<XmlReportParser.SourceFile> fourth = parse(cache, report);
+
+    assertThat(parsed).hasValue(2);
+    assertThat(first).isNotEmpty();
+    assertThat(third).containsExactlyElementsOf(second);
+    assertThat(fourth).containsExactlyElementsOf(second);
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.usedBytes()).isEqualTo(second.stream().mapToLong(ReportCache::estimatedBytes).sum());
+  }
+
+  @Test
+  void report_read_by_a_single_sensor_is_streamed() throws IOException {
+    Path report = copy("jacoco.xml");
+    ReportCache cache = new ReportCache(1 << 20);
+    List<Boolean> wholeParses = new ArrayList<>();
+
+    cache.parse(report, (consumer, whole) -> wholeParses.add(whole), sourceFile -> {
+    });
+    cache.parse(report, (consumer, whole) -> wholeParses.add(whole), sourceFile -> {
+    });
+
+    assertThat(wholeParses).containsExactly(false, true);
+  }
+
+  @Test
+  void modified_report_is_parsed_again() throws IOException {
+    Path report = copy("jacoco.xml");
+    ReportCache cache = new ReportCache(1 << 20);
+    parse(cache, report);
+    parse(cache, report);
+
+    Files.copy(Paths.get("src", "test", "resources", "simple.xml"), report, StandardCopyOption.REPLACE_EXISTING);
+    Files.setLastModifiedTime(report, FileTime.fromMillis(Files.getLastModifiedTime(report).toMillis() + 10_000));
+    List<XmlReportParser.SourceFile> sourceFiles = parse(cache, report);
+
+    assertThat(parsed).hasValue(3);
+    assertThat(sourceFiles).extracting(XmlReportParser.SourceFile::name).containsExactly("File.java");
+  }
+
+  @Test
+  void least_recently_used_reports_are_evicted() throws IOException {
+    Path jacoco = copy("jacoco.xml");
+    Path kotlin = copy("kotlin.xml");
+    Path simple = copy("simple.xml");
+    long budget = bytes(jacoco) + bytes(kotlin) + 1;
+    ReportCache cache = new ReportCache(budget);
+
+    parseTwice(cache, jacoco);
+    parseTwice(cache, simple);
+    parse(cache, jacoco);
+    parseTwice(cache, kotlin);
+    assertThat(parsed).hasValue(6);
+    assertThat(cache.usedBytes()).isLessThanOrEqualTo(budget);
+
+    parse(cache, jacoco);
+    assertThat(parsed).hasValue(6);
+    parse(cache, simple);
+    assertThat(parsed).hasValue(7);
+  }
+
+  @Test
+  void reports_larger_than_the_budget_are_not_cached() throws IOException {
+    Path report = copy("jacoco.xml");
+    ReportCache cache = new ReportCache(bytes(report) - 1);
+
+    List<XmlReportParser.SourceFile> first = parse(cache, report);
+    List<XmlReportParser.SourceFile> second = parse(cache, report);
+    List<XmlReportParser.SourceFile> third = parse(cache, report);
+
+    assertThat(parsed).hasValue(3);
+    assertThat(second).hasSameSizeAs(first);
+    assertThat(third).hasSameSizeAs(first);
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  void shrinking_the_budget_evicts_reports() throws IOException {
+    ReportCache cache = new ReportCache(1 << 20);
+    parseTwice(cache, copy("jacoco.xml"));
+    assertThat(cache.size()).isEqualTo(1);
+
+    cache.setMaxBytes(0);
+    assertThat(cache.size()).isZero();
+    assertThat(cache.usedBytes()).isZero();
+  }
+
+  private void parseTwice(ReportCache cache, Path report) {
+    parse(cache, report);
+    parse(cache, report);
+  }
+
+  private List<XmlReportParser.SourceFile> parse(ReportCache cache, Path report) {
+    List<XmlReportParser.SourceFile> sourceFiles = new ArrayList<>();
+    ReportCache.ReportParser parser = (consumer, whole) -> {
+      parsed.incrementAndGet();
+      new XmlReportParser(report).parse(consumer);
+    };
+    cache.parse(report, parser, sourceFiles::add);
+    return sourceFiles;
+  }
+
+  private static long bytes(Path report) {
+    return new XmlReportParser(report).parse().stream().mapToLong(ReportCache::estimatedBytes).sum();
+  }
+
+  private Path copy(String name) throws IOException {
+    return Files.copy(Paths.get("src", "test", "resources", name), temp.resolve(name));
+  }
+}
@@ -52,9 +52,9 @@ class ReportImporterTest {
       .setLines(10)
       .build();
     XmlReportParser.SourceFile sourceFile = new XmlReportParser.SourceFile("package", "name");
-    sourceFile.lines().add(new XmlReportParser.Line(1, 0, 0, 1, 1));
-    sourceFile.lines().add(new XmlReportParser.Line(2, 1, 2, 0, 0));
-    sourceFile.lines().add(new XmlReportParser.Line(3, 2, 0, 0, 0));
+    sourceFile.addLine(1, 0, 0, 1, 1);
+    sourceFile.addLine(2, 1, 2, 0, 0);
+    sourceFile.addLine(3, 2, 0, 0, 0);
 
     importer.importCoverage(sourceFile, inputFile);
 
@@ -70,4 +70,72 @@ class ReportImporterTest {
     Assertions.assertThat(ctx.lineHits(inputFile.key(), 2)).isEqualTo(1);
     Assertions.assertThat(ctx.lineHits(inputFile.key(), 3)).isEqualTo(0);
   }
+
+  @Test
+  void should_only_import_coverage_of_changed_files() {
+    InputFile sameFile = TestInputFileBuilder.create("module", "Same.java")
+      .setLines(10)
+      .setStatus(InputFile.Status.SAME)
+      .build();
+    InputFile changedFile = TestInputFileBuilder.create("module", "Changed.java")
+      .setLines(10)
+      .setStatus(InputFile.Status.CHANGED)
+      .build();
+    XmlReportParser.SourceFile sourceFile = new XmlReportParser.SourceFile("package", "name");
+    sourceFile.addLine(2, 1, 2, 0, 0);
+
+    ReportImporter changedFilesImporter = new ReportImporter(ctx, true);
+    changedFilesImporter.importCoverage(sourceFile, sameFile);
+    changedFilesImporter.importCoverage(sourceFile, changedFile);
+    // As found in another report
+    changedFilesImporter.importCoverage(sourceFile, sameFile);
+
+    Assertions.assertThat(ctx.lineHits(sameFile.key(), 2)).isNull();
+    Assertions.assertThat(ctx.lineHits(changedFile.key(), 2)).isEqualTo(1);
+    Assertions.assertThat(changedFilesImporter.skippedFiles()).isEqualTo(1);
+
+    importer.importCoverage(sourceFile, sameFile);
+    Assertions.assertThat(ctx.lineHits(sameFile.key(), 2)).isEqualTo(1);
+  }
+
+  @Test
+  void should_save_coverage_merged_from_several_reports_once() {
+    InputFile inputFile = TestInputFileBuilder.create("module", "filePath")
+      .setLines(10)
+      .build();
+    XmlReportParser.SourceFile unitTests = new XmlReportParser.SourceFile("package", "name");
+    unitTests.addLine(1, 0, 0, 1, 1);
+    unitTests.addLine(2, 1, 0, 0, 0);
+    XmlReportParser.SourceFile integrationTests = new XmlReportParser.SourceFile("package", "name");
+    integrationTests.addLine(1, 0, 0, 2, 0);
+    integrationTests.addLine(2, 0, 1, 0, 0);
+
+    ReportImporter mergingImporter = new ReportImporter(ctx, false, true);
+    mergingImporter.importCoverage(unitTests, inputFile);
+    mergingImporter.importCoverage(integrationTests, inputFile);
+    Assertions.assertThat(ctx.lineHits(inputFile.key(), 2)).isNull();
+
+    mergingImporter.saveMerged();
+    Assertions.assertThat(ctx.conditions(inputFile.key(), 1)).isEqualTo(2);
+    Assertions.assertThat(ctx.coveredConditions(inputFile.key(), 1)).isEqualTo(1);
+    Assertions.assertThat(ctx.lineHits(inputFile.key(), 2)).isEqualTo(1);
+  }
+
+  @Test
+  void should_reject_lines_out_of_range_when_merging() {
+    InputFile inputFile = TestInputFileBuilder.create("module", "filePath")
+      .setLines(10)
+      .build();
+    XmlReportParser.SourceFile sourceFile = new XmlReportParser.SourceFile("package", "name");
+    sourceFile.addLine(1, 0, 1, 0, 0);
+    sourceFile.addLine(11, 0, 1, 0, 0);
+
+    ReportImporter mergingImporter = new ReportImporter(ctx, false, true);
+    Assertions.assertThatThrownBy(() -> mergingImporter.importCoverage(sourceFile, inputFile))
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessage(String.format("Line 11 is out of range in the file %s (lines: 10)", inputFile));
+
+    mergingImporter.saveMerged();
+    Assertions.assertThat(ctx.lineHits(inputFile.key(), 1)).isNull();
+  }
 }
@@ -0,0 +1,157 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReportIndexTest {
+
+  @TempDir
+  Path temp;
+
+  @Test
+  void should_parse_only_the_selected_packages() throws IOException {
+    Path report = write("report.xml", 6, 2);
+    Predicate<String> filter = Set.of("org/example/p0", "org/example/p1", "org/example/p4")::contains;
+
+    ReportIndex index = ReportIndex.build(report, new NameTable());
+    List<XmlReportParser.SourceFile> sourceFiles = new ArrayList<>();
+    index.parse(filter, new NameTable(), sourceFiles::add);
+
+    assertThat(index.ranges()).extracting(range -> range.packageName)
+      .containsExactly("org/example/p0", "org/example/p1", "org/example/p2", "org/example/p3", "org/example/p4", "org/example/p5");
+    assertThat(index.ranges().get(4).groupName).isEqualTo("module1");
+    List<XmlReportParser.SourceFile> expected = new XmlReportParser(report).parse().stream()
+      .filter(sourceFile -> filter.test(sourceFile.packageName()))
+      .collect(Collectors.toList());
+    assertThat(describe(sourceFiles)).isEqualTo(describe(expected));
+    assertThat(sourceFiles.get(sourceFiles.size() - 1).groupName()).isEqualTo("module1");
+  }
+
+  @Test
+  void large_reports_are_indexed_once_for_all_modules() throws IOException {
+    Path report = write("report.xml", 200, 10);
+    ReportIndex.Cache indexes = new ReportIndex.Cache();
+    ImportSettings settings = slicing(indexes);
+
+    List<XmlReportParser.SourceFile> first = new XmlReportParser(report, settings.copy().setPackageFilter("org/example/p7"::equals)).parse();
+    List<XmlReportParser.SourceFile> second = new XmlReportParser(report, settings.copy().setPackageFilter("org/example/p150"::equals)).parse();
+
+    assertThat(ReportIndex.isIndexable(report)).isTrue();
+    assertThat(indexes.size()).isEqualTo(1);
+    assertThat(first).hasSize(10).allSatisfy(sourceFile -> assertThat(sourceFile.packageName()).isEqualTo("org/example/p7"));
+    assertThat(second).hasSize(10).allSatisfy(sourceFile -> assertThat(sourceFile.packageName()).isEqualTo("org/example/p150"));
+  }
+
+  @Test
+  void small_reports_are_parsed_whole() throws IOException {
+    Path report = write("small.xml", 3, 1);
+    ReportIndex.Cache indexes = new ReportIndex.Cache();
+    ImportSettings settings = slicing(indexes).setPackageFilter("org/example/p1"::equals);
+
+    List<XmlReportParser.SourceFile> sourceFiles = new XmlReportParser(report, settings).parse();
+
+    assertThat(ReportIndex.isIndexable(report)).isFalse();
+    assertThat(indexes.size()).isZero();
+    assertThat(sourceFiles).hasSize(3);
+  }
+
+  @Test
+  void reports_are_parsed_whole_unless_slicing_is_enabled_with_the_bytes_parser() throws IOException {
+    Path report = write("report.xml", 200, 10);
+    ReportIndex.Cache indexes = new ReportIndex.Cache();
+    ImportSettings settings = slicing(indexes).setPackageFilter("org/example/p7"::equals);
+
+    List<XmlReportParser.SourceFile> disabled = new XmlReportParser(report, settings.copy().setReportSlicing(false)).parse();
+    List<XmlReportParser.SourceFile> stax = new XmlReportParser(report, settings.copy().setParser(ImportSettings.Parser.STAX)).parse();
+
+    assertThat(indexes.size()).isZero();
+    assertThat(disabled).hasSize(2000);
+    assertThat(stax).hasSize(2000);
+  }
+
+  @Test
+  void whole_report_cached_for_the_other_modules_is_reused() throws IOException {
+    Path report = write("report.xml", 200, 10);
+    ReportIndex.Cache indexes = new ReportIndex.Cache();
+    ReportCache reportCache = new ReportCache(Long.MAX_VALUE);
+    ImportSettings settings = slicing(indexes).setReportCache(reportCache);
+    // The second read of the report by a module without package filter keeps it in the cache
+    new XmlReportParser(report, settings).parse();
+    new XmlReportParser(report, settings).parse();
+
+    List<XmlReportParser.SourceFile> sourceFiles = new XmlReportParser(report, settings.copy().setPackageFilter("org/example/p7"::equals)).parse();
+
+    assertThat(reportCache.size()).isEqualTo(1);
+    assertThat(indexes.size()).isZero();
+    assertThat(sourceFiles).hasSize(2000);
+  }
+
+  private static ImportSettings slicing(ReportIndex.Cache indexes) {
+    return ImportSettings.defaults().setParser(ImportSettings.Parser.BYTES).setReportSlicing(true).setReportIndexes(indexes);
+  }
+
+  /**
+   * A report whose packages are split between the report itself and a group, with files of 100 lines.
+   */
+  private Path write(String name, int packages, int filesPerPackage) throws IOException {
+    StringBuilder content = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<report name=\"index\">\n");
+    for (int p = 0; p < packages; p++) {
+      if (p == packages / 2) {
+        content.append("<group name=\"module1\">\n");
+      }
+      String packageName = "org/example/p" + p;
+      content.append("<package name=\"").append(packageName).append("\">\n");
+      for (int file = 0; file < filesPerPackage; file++) {
+        content.append("<sourcefile name=\"File").append(file).append(".java\">\n");
+        for (int line = 1; line <= 100; line++) {
+          content.append("<line nr=\"").append(line).append("\" mi=\"").append(line % 3).append("\" ci=\"").append(p)
+            .append("\" mb=\"0\" cb=\"").append(file).append("\"/>\n");
+        }
+        content.append("</sourcefile>\n");
+      }
+      content.append("<counter type=\"LINE\" missed=\"1\" covered=\"2\"/>\n</package>\n");
+    }
+    content.append("</group>\n</report>\n");
+    Path report = temp.resolve(name);
+    Files.write(report, content.toString().getBytes(StandardCharsets.UTF_8));
+    return report;
+  }
+
+  private static List<String> describe(List<XmlReportParser.SourceFile> sourceFiles) {
+    return sourceFiles.stream()
+      .map(sourceFile -> sourceFile.groupName() + "|" + sourceFile.packageName() + "|" + sourceFile.name() + "|" + sourceFile.lines().stream()
+        .map(line -> line.number() + ":" + line.missedInstrs() + ":" + line.coveredInstrs() + ":" + line.missedBranches() + ":" + line.coveredBranches())
+        .collect(Collectors.joining(",")))
+      .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReportInputTest {
+
+  @TempDir
+  Path temp;
+
+  private Path load(String name) throws URISyntaxException {
+    return Paths.get(this.getClass().getClassLoader().getResource(name).toURI());
+  }
+
+  @Test
+  void small_reports_are_streamed_and_large_reports_are_mapped() throws IOException {
+    Path small = temp.resolve("small.xml");
+    Files.write(small, new byte[1024]);
+    Path large = temp.resolve("large.xml");
+    try (RandomAccessFile file = new RandomAccessFile(large.toFile(), "rw")) {
+      file.setLength(ReportInput.MAPPING_THRESHOLD);
+    }
+
+    try (ReportInput input = ReportInput.open(small)) {
+      assertThat(input).isInstanceOf(ReportInput.Streamed.class);
+    }
+    try (ReportInput input = ReportInput.open(large)) {
+      assertThat(input).isInstanceOf(ReportInput.Mapped.class);
+      assertThat(input.next().remaining()).isEqualTo((int) ReportInput.MAPPING_THRESHOLD);
+      assertThat(input.next()).isNull();
+    }
+  }
+
+  @Test
+  void mapped_windows_are_read_as_one_report() throws Exception {
+    Path report = load("jacoco.xml");
+    List<XmlReportParser.SourceFile> expected = new XmlReportParser(report).parse();
+
+    List<XmlReportParser.SourceFile> scanned = new ArrayList<>();
+    try (ReportInput input = mapped(report, 7)) {
+      new ByteXmlReportScanner(input).scan(scanned::add);
+    }
+
+    assertThat(scanned).hasSameSizeAs(expected);
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(scanned.get(i).name()).isEqualTo(expected.get(i).name());
+      assertThat(scanned.get(i).lines()).isEqualTo(expected.get(i).lines());
+    }
+  }
+
+  @Test
+  void mapped_windows_can_be_read_as_a_stream() throws Exception {
+    Path report = load("jacoco.xml");
+
+    try (InputStream input = mapped(report, 1000).asInputStream()) {
+      assertThat(input.readAllBytes()).isEqualTo(Files.readAllBytes(report));
+    }
+  }
+
+  private static ReportInput mapped(Path report, long windowSize) throws IOException {
+    FileChannel channel = FileChannel.open(report, StandardOpenOption.READ);
+    return new ReportInput.Mapped(channel, 0, channel.size(), windowSize);
+  }
+}
@@ -272,4 +272,30 @@ class ReportPathsProviderTest {
       .containsExactly("'sonar.coverage.jacoco.xmlReportPaths' is not defined." +
         " Using default locations: target/site/jacoco/jacoco.xml,target/site/jacoco-it/jacoco.xml,build/reports/jacoco/test/jacocoTestReport.xml");
   }
+
+  @Test
+  void should_find_exec_reports_matching_patterns() throws IOException {
+    Path exec = baseDir.resolve(Paths.get("target", "jacoco.exec"));
+    Files.createDirectories(exec.getParent());
+    Files.createFile(exec);
+    settings.setProperty(ReportPathsProvider.EXEC_REPORT_PATHS_PROPERTY_KEY, "target/*.exec,missing/*.exec");
+
+    assertThat(provider.getExecPaths()).containsOnly(exec);
+    assertThat(logTester.logs(Level.WARN)).containsExactly("No execution data found for pattern: 'missing/*.exec'");
+    verify(analysisWarnings).addUnique("No execution data found for pattern: 'missing/*.exec'");
+  }
+
+  @Test
+  void should_return_no_exec_report_if_not_specified() {
+    assertThat(provider.getExecPaths()).isEmpty();
+    assertThat(logTester.logs()).isEmpty();
+  }
+
+  @Test
+  void should_resolve_existing_class_directories() throws IOException {
+    Path classes = Files.createDirectories(baseDir.resolve(Paths.get("target", "classes")));
+    settings.setProperty(ReportPathsProvider.CLASS_DIRECTORIES_PROPERTY_KEY, "target/classes,target/missing," + classes);
+
+    assertThat(provider.getClassDirectories()).containsExactly(classes);
+  }
 }
@@ -20,10 +20,21 @@
 package org.sonar.plugins.jacoco;
 
 import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.sonar.api.batch.fs.InputFile;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
 
 class ReversePathTreeTest {
   @Test
@@ -76,4 +87,235 @@ class ReversePathTreeTest {
     String[] pathWithoutSourceDirectory = new String[]{"src","main", "java","org", "example", "App.java"};
     assertThat(reverseParseTree.getFileWithSuffix("my-module", pathWithoutSourceDirectory)).isNull();
   }
+
+  @Test
+  void files_indexed_under_the_path_of_other_files_are_found_as_before() {
+    InputFile shortFile = mock(InputFile.class);
+    InputFile longFile = mock(InputFile.class);
+    var tree = new ReversePathTree();
+    tree.index(longFile, new String[] {"a", "b", "File.java"});
+    tree.index(shortFile, new String[] {"b", "File.java"});
+
+    assertThat(tree.getFileWithSuffix(new String[] {"File.java"})).isEqualTo(longFile);
+    assertThat(tree.getFileWithSuffix(new String[] {"b", "File.java"})).isEqualTo(longFile);
+    assertThat(tree.getFileWithSuffix(new String[] {"a", "b", "File.java"})).isEqualTo(longFile);
+    assertThat(tree.getFileWithSuffix(new String[] {"c", "b", "File.java"})).isNull();
+    assertThat(tree.getFileWithSuffix(new String[] {"x", "a", "b", "File.java"})).isNull();
+  }
+
+  @Test
+  void files_sharing_their_name_are_counted() {
+    var tree = new ReversePathTree();
+    tree.index(mock(InputFile.class), "a/b/File.java".split("/"));
+    tree.index(mock(InputFile.class), "b/File.java".split("/"));
+    tree.index(mock(InputFile.class), "c/File.java".split("/"));
+    tree.index(mock(InputFile.class), "c/File.java".split("/"));
+    tree.index(mock(InputFile.class), "a/Unique.java".split("/"));
+    tree.index(mock(InputFile.class), "a/Other.java".split("/"));
+    tree.index(mock(InputFile.class), "b/Other.java".split("/"));
+
+    assertThat(tree.fileCount()).isEqualTo(6);
+    assertThat(tree.filesWithSharedName()).isEqualTo(5);
+  }
+
+  @Test
+  void names_of_the_files_accepted_by_the_filter_are_listed() {
+    var tree = new ReversePathTree();
+    for (String path : List.of("a/b/File.java", "c/File.java", "a/Changed.java", "a/Same.java")) {
+      InputFile.Status status = path.endsWith("Same.java") ? InputFile.Status.SAME : InputFile.Status.CHANGED;
+      tree.index(TestInputFileBuilder.create("module", path).setStatus(status).build(), path.split("/"));
+    }
+
+    assertThat(tree.fileNames(file -> true)).isEqualTo(Set.of("File.java", "Changed.java", "Same.java"));
+    assertThat(tree.fileNames(file -> file.status() != InputFile.Status.SAME)).isEqualTo(Set.of("File.java", "Changed.java"));
+  }
+
+  @Test
+  void files_with_a_unique_name_are_found_by_their_suffixes() {
+    InputFile file = mock(InputFile.class);
+    var tree = new ReversePathTree();
+    tree.index(file, "module/src/main/java/org/example/File.java".split("/"));
+    tree.index(mock(InputFile.class), "module/src/main/java/org/example/Other.java".split("/"));
+
+    assertThat(tree.getFileWithSuffix("org/example", "File.java")).isSameAs(file);
+    assertThat(tree.getFileWithSuffix("module/src/main/java/org/example", "File.java")).isSameAs(file);
+    assertThat(tree.getFileWithSuffix("org/other", "File.java")).isNull();
+    assertThat(tree.getFileWithSuffix("root/module/src/main/java/org/example", "File.java")).isNull();
+    assertThat(tree.getFileWithSuffix("example", "Missing.java")).isNull();
+  }
+
+  @Test
+  void character_sequences_are_split_as_strings_are() {
+    InputFile file = mock(InputFile.class);
+    InputFile other = mock(InputFile.class);
+    var tree = new ReversePathTree();
+    tree.index(file, "src/main/java/org/example/File.java".split("/"));
+    tree.index(other, "/org//File.java".split("/"));
+
+    assertThat(tree.getFileWithSuffix("org/example", "File.java")).isSameAs(file);
+    assertThat(tree.getFileWithSuffix(new StringBuilder("java/org/example"), new StringBuilder("File.java"))).isSameAs(file);
+    assertThat(tree.getFileWithSuffix("", "File.java")).isSameAs(file);
+    assertThat(tree.getFileWithSuffix("org/", "File.java")).isSameAs(other);
+    assertThat(tree.getFileWithSuffix("/org/", "File.java")).isSameAs(other);
+    assertThat(tree.getFileWithSuffix("rg/example", "File.java")).isNull();
+    assertThat(tree.getFileWithSuffix("org/example", "File")).isNull();
+  }
+
+  @Test
+  void character_sequences_are_looked_up_without_allocating() {
+    com.sun.management.ThreadMXBean threads = allocationCountingThreadMXBean();
+    var tree = new ReversePathTree();
+    InputFile file = mock(InputFile.class);
+    String[] packagePaths = new String[100];
+    for (int p = 0; p < packagePaths.length; p++) {
+      packagePaths[p] = "org/example/p" + p;
+      for (int f = 0; f < 10; f++) {
+        tree.index(file, ("module/src/main/java/" + packagePaths[p] + "/File" + f + ".java").split("/"));
+      }
+    }
+    String[] fileNames = {"File0.java", "File5.java", "Missing.java"};
+
+    int found = 0;
+    long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    for (int i = 0; i < 100_000; i++) {
+      if (tree.getFileWithSuffix(packagePaths[i % packagePaths.length], fileNames[i % fileNames.length]) != null) {
+        found++;
+      }
+    }
+    long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+    assertThat(found).isEqualTo(66_667);
+    assertThat(allocated).isLessThan(1024);
+  }
+
+  @Test
+  void lookups_behave_as_with_a_tree_of_maps() {
+    Random random = new Random(42);
+    String[] segments = {"a", "b", "c", "src", "main", "java", "org", "module", "File.java", "Other.java"};
+    var tree = new ReversePathTree();
+    var reference = new MapTree();
+    List<String[]> paths = new ArrayList<>();
+    for (int i = 0; i < 2_000; i++) {
+      String[] path = randomPath(random, segments);
+      InputFile file = mock(InputFile.class);
+      tree.index(file, path);
+      reference.index(file, path);
+      paths.add(path);
+    }
+
+    for (int i = 0; i < 5_000; i++) {
+      String[] indexed = paths.get(random.nextInt(paths.size()));
+      String[] suffix = Arrays.copyOfRange(indexed, random.nextInt(indexed.length), indexed.length);
+      String[] query = random.nextBoolean() ? suffix : randomPath(random, segments);
+      String module = segments[random.nextInt(segments.length)];
+      assertThat(tree.getFileWithSuffix(query)).isSameAs(reference.getFileWithSuffix(query));
+      assertThat(tree.getFileWithSuffix(module, query)).isSameAs(reference.getFileWithSuffix(module, query));
+      String packagePath = String.join("/", Arrays.copyOf(query, query.length - 1));
+      String fileName = query[query.length - 1];
+      assertThat(tree.getFileWithSuffix(packagePath, fileName)).isSameAs(reference.getFileWithSuffix(query));
+      assertThat(tree.getFileWithSuffix(module, packagePath, fileName)).isSameAs(reference.getFileWithSuffix(module, query));
+    }
+  }
+
+  @Test
+  void footprint_is_bound_by_the_distinct_segments_and_the_branches_of_the_paths() {
+    List<String> relativePaths = new ArrayList<>();
+    for (int i = 0; i < 20_000; i++) {
+      relativePaths.add("module" + (i % 50) + "/src/main/java/org/example/p" + (i % 2_000) + "/File" + i + ".java");
+    }
+    InputFile file = mock(InputFile.class);
+
+    var reference = new MapTree();
+    var tree = new ReversePathTree();
+    for (String relativePath : relativePaths) {
+      reference.index(file, relativePath.split("/"));
+      tree.index(file, relativePath.split("/"));
+    }
+
+    assertThat(reference.getFileWithSuffix(new String[] {"File7.java"})).isSameAs(tree.getFileWithSuffix(new String[] {"File7.java"}));
+    // A map and a node per segment of each path with the former tree, a single node per file whose name is unique with this one
+    assertThat(reference.nodeCount()).isEqualTo(1 + 8 * 20_000);
+    assertThat(tree.nodeCount()).isEqualTo(1 + 20_000);
+    // The file names, the modules, the packages and the 5 directories in between are stored once
+    assertThat(tree.segmentCount()).isEqualTo(20_000 + 50 + 2_000 + 5);
+  }
+
+  private static String[] randomPath(Random random, String[] segments) {
+    String[] path = new String[1 + random.nextInt(6)];
+    for (int i = 0; i < path.length; i++) {
+      path[i] = segments[random.nextInt(segments.length)];
+    }
+    return path;
+  }
+
+  private static com.sun.management.ThreadMXBean allocationCountingThreadMXBean() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean allocationCounting = (com.sun.management.ThreadMXBean) threads;
+    assumeTrue(allocationCounting.isThreadAllocatedMemorySupported() && allocationCounting.isThreadAllocatedMemoryEnabled());
+    return allocationCounting;
+  }
+
+  /**
+   * The former implementation of the tree, with a map of children per node, as the reference of the lookups and the footprint.
+   */
+  private static class MapTree {
+    private final Node root = new Node();
+
+    void index(InputFile inputFile, String[] path) {
+      Node node = root;
+      for (int i = path.length - 1; i >= 0; i--) {
+        node = node.children.computeIfAbsent(path[i], e -> new Node());
+      }
+      node.file = inputFile;
+    }
+
+    InputFile getFileWithSuffix(String[] path) {
+      Node node = find(path);
+      if (node == null) {
+        return null;
+      }
+      while (!node.children.isEmpty()) {
+        node = node.children.values().iterator().next();
+      }
+      return node.file;
+    }
+
+    InputFile getFileWithSuffix(String module, String[] path) {
+      Node node = find(path);
+      while (node != null && !node.children.isEmpty()) {
+        if (node.children.size() == 1) {
+          node = node.children.values().iterator().next();
+        } else {
+          Node moduleNode = node.children.get(module);
+          return moduleNode == null ? null : moduleNode.file;
+        }
+      }
+      return null;
+    }
+
+    int nodeCount() {
+      int count = 0;
+      List<Node> nodes = new ArrayList<>(List.of(root));
+      while (!nodes.isEmpty()) {
+        Node node = nodes.remove(nodes.size() - 1);
+        count++;
+        nodes.addAll(node.children.values());
+      }
+      return count;
+    }
+
+    private Node find(String[] path) {
+      Node node = root;
+      for (int i = path.length - 1; i >= 0 && node != null; i--) {
+        node = node.children.get(path[i]);
+      }
+      return node;
+    }
+
+    private static class Node {
+      private final Map<String, Node> children = new LinkedHashMap<>();
+      private InputFile file;
+    }
+  }
 }
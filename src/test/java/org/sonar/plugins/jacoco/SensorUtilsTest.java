@@ -22,7 +22,11 @@ package org.sonar.plugins.jacoco;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.slf4j.Logger;
@@ -35,7 +39,9 @@ import org.sonar.api.testfixtures.log.LogTesterJUnit5;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -51,13 +57,12 @@ class SensorUtilsTest {
   void import_coverage() {
     ModuleFileLocator locator = mock(ModuleFileLocator.class);
     ReportImporter importer = mock(ReportImporter.class);
-    XmlReportParser parser = mock(XmlReportParser.class);
     InputFile inputFile = mock(InputFile.class);
 
     XmlReportParser.SourceFile sourceFile = new XmlReportParser.SourceFile("package", "File.java");
-    sourceFile.lines().add(new XmlReportParser.Line(1, 0, 1, 0, 0));
+    sourceFile.addLine(1, 0, 1, 0, 0);
 
-    when(parser.parse()).thenReturn(Collections.singletonList(sourceFile));
+    XmlReportParser parser = streamSourceFiles(sourceFile);
     when(locator.getInputFile(null,"package", "File.java")).thenReturn(inputFile);
 
     SensorUtils.importReport(parser, locator, importer, null);
@@ -67,7 +72,7 @@ class SensorUtilsTest {
 
   @Test
   void parse_failure_do_not_fail_analysis() {
-    ModuleFileLocator locator = mock(ModuleFileLocator.class);
+    ModuleFileLocator locator = mockLocator("Stats.java", "File.java");
     ReportImporter importer = mock(ReportImporter.class);
     InputFile inputFile = mock(InputFile.class);
     Path baseDir = Paths.get("src", "test", "resources");
@@ -75,6 +80,7 @@ class SensorUtilsTest {
     Path validFile = baseDir.resolve("jacoco.xml");
 
     when(locator.getInputFile(null, "org/sonarlint/cli", "Stats.java")).thenReturn(inputFile);
+    when(locator.getInputFile(null, "org/sonarlint/cli", "File.java")).thenReturn(mock(InputFile.class));
 
     AnalysisWarnings analysisWarnings = mock(AnalysisWarnings.class);
     SensorUtils.importReports(Arrays.asList(invalidFile, validFile), locator, importer, LOG, analysisWarnings);
@@ -91,16 +97,159 @@ class SensorUtilsTest {
     verify(importer, times(1)).importCoverage(any(), eq(inputFile));
   }
 
+  @Test
+  void import_reports_concurrently() {
+    ModuleFileLocator locator = mockLocator("Stats.java", "File.java", "Builder.kt");
+    ReportImporter importer = mock(ReportImporter.class);
+    InputFile statsFile = mock(InputFile.class);
+    InputFile simpleFile = mock(InputFile.class);
+    InputFile kotlinFile = mock(InputFile.class);
+    Path baseDir = Paths.get("src", "test", "resources");
+    Path invalidFile = baseDir.resolve("invalid_ci_in_line.xml");
+
+    when(locator.getInputFile(null, "org/sonarlint/cli", "Stats.java")).thenReturn(statsFile);
+    when(locator.getInputFile(null, "org/sonarlint/cli", "File.java")).thenReturn(simpleFile);
+    when(locator.getInputFile(null, "com/yundom/kache", "Builder.kt")).thenReturn(kotlinFile);
+    Set<Thread> importThreads = ConcurrentHashMap.newKeySet();
+    doAnswer(invocation -> importThreads.add(Thread.currentThread())).when(importer).importCoverage(any(), any());
+
+    AnalysisWarnings analysisWarnings = mock(AnalysisWarnings.class);
+    List<Path> reports = Arrays.asList(invalidFile, baseDir.resolve("jacoco.xml"), baseDir.resolve("simple.xml"), baseDir.resolve("kotlin.xml"));
+    SensorUtils.importReports(reports, locator, importer, LOG, analysisWarnings, ImportSettings.defaults().setImportThreads(4));
+
+    verify(importer).importCoverage(any(), eq(statsFile));
+    verify(importer).importCoverage(any(), eq(simpleFile));
+    verify(importer).importCoverage(any(), eq(kotlinFile));
+    assertThat(importThreads).containsOnly(Thread.currentThread());
+    String expectedErrorMessage = String.format(
+      "Coverage report '%s' could not be read/imported. Error: java.lang.IllegalStateException: Invalid report: failed to parse integer from the attribute 'ci' for the sourcefile 'File.java' at line 6 column 61",
+      invalidFile);
+    assertThat(logTester.logs(Level.ERROR)).containsExactly(expectedErrorMessage);
+    verify(analysisWarnings).addUnique(expectedErrorMessage);
+  }
+
+  @Test
+  void import_failure_only_stops_its_own_report_when_importing_concurrently() {
+    ModuleFileLocator locator = mockLocator("Stats.java", "Builder.kt");
+    ReportImporter importer = mock(ReportImporter.class);
+    InputFile kotlinFile = mock(InputFile.class);
+    Path baseDir = Paths.get("src", "test", "resources");
+    Path failingReport = baseDir.resolve("jacoco.xml");
+
+    when(locator.getInputFile(null, "org/sonarlint/cli", "Stats.java")).thenThrow(new IllegalArgumentException("boom"));
+    when(locator.getInputFile(null, "com/yundom/kache", "Builder.kt")).thenReturn(kotlinFile);
+
+    AnalysisWarnings analysisWarnings = mock(AnalysisWarnings.class);
+    SensorUtils.importReports(Arrays.asList(failingReport, baseDir.resolve("kotlin.xml")), locator, importer, LOG, analysisWarnings,
+      ImportSettings.defaults().setImportThreads(2));
+
+    String expectedErrorMessage = String.format("Coverage report '%s' could not be read/imported. Error: java.lang.IllegalArgumentException: boom", failingReport);
+    verify(analysisWarnings).addUnique(expectedErrorMessage);
+    verify(locator, never()).getInputFile(null, "org/sonarlint/cli", "InputFileFinder.java");
+    verify(importer).importCoverage(any(), eq(kotlinFile));
+  }
+
+  @Test
+  void import_reports_merged_in_lockstep() {
+    ModuleFileLocator locator = mockLocator("Stats.java", "File.java");
+    ReportImporter importer = mock(ReportImporter.class);
+    InputFile statsFile = mock(InputFile.class);
+    InputFile simpleFile = mock(InputFile.class);
+    Path baseDir = Paths.get("src", "test", "resources");
+    Path invalidFile = baseDir.resolve("invalid_ci_in_line.xml");
+
+    when(locator.getInputFile(null, "org/sonarlint/cli", "Stats.java")).thenReturn(statsFile);
+    when(locator.getInputFile(null, "org/sonarlint/cli", "File.java")).thenReturn(simpleFile);
+
+    AnalysisWarnings analysisWarnings = mock(AnalysisWarnings.class);
+    List<Path> reports = Arrays.asList(invalidFile, baseDir.resolve("jacoco.xml"), baseDir.resolve("simple.xml"));
+    SensorUtils.importReports(reports, locator, importer, LOG, analysisWarnings, ImportSettings.defaults().setStreamingMerge(true));
+
+    verify(importer, times(1)).importCoverage(any(), eq(statsFile));
+    verify(importer, times(1)).importCoverage(any(), eq(simpleFile));
+    String expectedErrorMessage = String.format(
+      "Coverage report '%s' could not be read/imported. Error: java.lang.IllegalStateException: Invalid report: failed to parse integer from the attribute 'ci' for the sourcefile 'File.java' at line 6 column 61",
+      invalidFile);
+    verify(analysisWarnings).addUnique(expectedErrorMessage);
+  }
+
+  @Test
+  void lines_of_files_not_found_are_not_read() {
+    ModuleFileLocator locator = mockLocator();
+    ReportImporter importer = mock(ReportImporter.class);
+    Path report = Paths.get("src", "test", "resources", "invalid_ci_in_line.xml");
+
+    AnalysisWarnings analysisWarnings = mock(AnalysisWarnings.class);
+    SensorUtils.importReports(List.of(report), locator, importer, LOG, analysisWarnings);
+
+    assertThat(logTester.logs(Level.ERROR)).isEmpty();
+    assertThat(logTester.logs(Level.WARN)).contains("File 'File.java' not found in project sources");
+    verify(importer, never()).importCoverage(any(), any());
+  }
+
+  @Test
+  void files_to_import_are_resolved_on_the_calling_thread() {
+    Set<Thread> apiThreads = ConcurrentHashMap.newKeySet();
+    InputFile statsFile = mockInputFile("src/main/java/org/sonarlint/cli/Stats.java", apiThreads);
+    InputFile unchangedFile = mockInputFile("src/main/java/org/sonarlint/cli/File.java", apiThreads);
+    ModuleFileLocator locator = new ModuleFileLocator(List.of(statsFile, unchangedFile), new KotlinFileLocator(Stream.empty()));
+    ReportImporter importer = mock(ReportImporter.class);
+    when(importer.needsCoverage(any())).thenAnswer(invocation -> {
+      apiThreads.add(Thread.currentThread());
+      return invocation.getArgument(0) == statsFile;
+    });
+    Path baseDir = Paths.get("src", "test", "resources");
+
+    AnalysisWarnings analysisWarnings = mock(AnalysisWarnings.class);
+    List<Path> reports = Arrays.asList(baseDir.resolve("jacoco.xml"), baseDir.resolve("invalid_ci_in_line.xml"), baseDir.resolve("kotlin.xml"));
+    SensorUtils.importReports(reports, locator, importer, LOG, analysisWarnings, ImportSettings.defaults().setImportThreads(3));
+
+    assertThat(apiThreads).containsOnly(Thread.currentThread());
+    // The invalid lines of the file which isn't imported are not read
+    assertThat(logTester.logs(Level.ERROR)).isEmpty();
+    verify(importer).importCoverage(any(), eq(statsFile));
+  }
+
   @Test
   void do_nothing_if_file_not_found() {
     ModuleFileLocator locator = mock(ModuleFileLocator.class);
     ReportImporter importer = mock(ReportImporter.class);
-    XmlReportParser parser = mock(XmlReportParser.class);
-    XmlReportParser.SourceFile sourceFile = mock(XmlReportParser.SourceFile.class);
+    XmlReportParser parser = streamSourceFiles(new XmlReportParser.SourceFile("package", null));
 
-    when(parser.parse()).thenReturn(Collections.singletonList(sourceFile));
     SensorUtils.importReport(parser, locator, importer, LOG);
 
     assertThat(logTester.logs(Level.WARN)).anySatisfy(logMessage -> assertThat(logMessage).contains("File 'null' not found in project sources"));
   }
+
+  private static InputFile mockInputFile(String relativePath, Set<Thread> apiThreads) {
+    InputFile inputFile = mock(InputFile.class);
+    when(inputFile.relativePath()).thenReturn(relativePath);
+    when(inputFile.filename()).thenAnswer(invocation -> {
+      apiThreads.add(Thread.currentThread());
+      return relativePath.substring(relativePath.lastIndexOf('/') + 1);
+    });
+    return inputFile;
+  }
+
+  /**
+   * @param fileNames the names of the files to import, whose lines are read from the reports
+   */
+  private static ModuleFileLocator mockLocator(String... fileNames) {
+    ModuleFileLocator locator = mock(ModuleFileLocator.class);
+    when(locator.fileNames(any())).thenReturn(Set.of(fileNames));
+    return locator;
+  }
+
+  /**
+   * The parser is not mocked, as the inline mocks would instrument its class for the other tests of the JVM, which measure its
+   * allocations.
+   */
+  private static XmlReportParser streamSourceFiles(XmlReportParser.SourceFile... sourceFiles) {
+    return new XmlReportParser(Paths.get("report.xml")) {
+      @Override
+      public void parse(Consumer<SourceFile> consumer) {
+        Arrays.stream(sourceFiles).forEach(consumer);
+      }
+    };
+  }
 }
@@ -0,0 +1,63 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.junit.jupiter.api.Test;
+import org.sonar.scanner.plugin.api.impl.config.MapSettings;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StaxFactoryTest {
+
+  @Test
+  void should_create_readers_with_the_same_factory() throws XMLStreamException {
+    StaxFactory factory = new StaxFactory();
+
+    for (String name : new String[] {"first", "second"}) {
+      XMLStreamReader reader = factory.createReader(input("<report name=\"" + name + "\"/>"));
+      assertThat(reader.nextTag()).isEqualTo(XMLStreamReader.START_ELEMENT);
+      assertThat(reader.getLocalName()).isEqualTo("report");
+      assertThat(reader.getAttributeValue(null, "name")).isEqualTo(name);
+    }
+  }
+
+  @Test
+  void should_be_shared_by_copies_of_the_settings() {
+    ImportSettings settings = ImportSettings.defaults();
+
+    assertThat(settings.copy().staxFactory()).isSameAs(settings.staxFactory());
+  }
+
+  @Test
+  void should_not_be_shared_by_sensor_executions() {
+    MapSettings settings = new MapSettings();
+
+    assertThat(ImportSettings.from(settings.asConfig()).staxFactory()).isNotSameAs(ImportSettings.from(settings.asConfig()).staxFactory());
+  }
+
+  private static InputStream input(String content) {
+    return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+  }
+}
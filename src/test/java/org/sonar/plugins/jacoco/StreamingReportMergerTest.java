@@ -0,0 +1,133 @@
+/*
+ * SonarQube JaCoCo Plugin
+ * Copyright (C) 2018-2026 SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.jacoco;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingReportMergerTest {
+
+  @TempDir
+  Path temp;
+
+  @Test
+  void merges_each_source_file_of_all_the_reports_once() throws IOException {
+    Path first = report("first.xml",
+      "<package name='org/a'><sourcefile name='A.java'><line nr='1' mi='1' ci='0' mb='0' cb='0'/><line nr='2' mi='0' ci='2' mb='1' cb='1'/></sourcefile>"
+        + "<sourcefile name='B.java'><line nr='1' mi='1' ci='0' mb='0' cb='0'/></sourcefile></package>");
+    Path second = report("second.xml",
+      "<package name='org/a'><sourcefile name='A.java'><line nr='1' mi='0' ci='1' mb='0' cb='0'/><line nr='2' mi='0' ci='2' mb='2' cb='0'/>"
+        + "<line nr='3' mi='1' ci='0' mb='0' cb='0'/></sourcefile></package>"
+        + "<package name='org/b'><sourcefile name='C.java'><line nr='4' mi='0' ci='1' mb='0' cb='0'/></sourcefile></package>");
+
+    List<XmlReportParser.SourceFile> merged = merge(List.of(first, second), new ArrayList<>());
+
+    assertThat(merged).extracting(file -> file.packageName() + "/" + file.name()).containsExactly("org/a/A.java", "org/a/B.java", "org/b/C.java");
+    assertThat(merged.get(0).lines()).containsExactly(
+      new XmlReportParser.Line(1, 1, 1, 0, 0),
+      new XmlReportParser.Line(2, 0, 2, 1, 1),
+      new XmlReportParser.Line(3, 1, 0, 0, 0));
+  }
+
+  @Test
+  void merges_the_shards_of_a_test_suite() throws IOException {
+    List<Path> shards = new ArrayList<>();
+    for (int shard = 0; shard < 50; shard++) {
+      StringBuilder packages = new StringBuilder();
+      for (int pkg = 0; pkg < 5; pkg++) {
+        packages.append("<package name='org/p").append(pkg).append("'>");
+        for (int file = 0; file < 10; file++) {
+          packages.append("<sourcefile name='F").append(file).append(".java'>");
+          for (int line = 1; line <= 50; line++) {
+            boolean covered = line % 50 == shard % 50;
+            packages.append("<line nr='").append(line).append("' mi='").append(covered ? 0 : 1).append("' ci='").append(covered ? 1 : 0)
+              .append("' mb='0' cb='0'/>");
+          }
+          packages.append("</sourcefile>");
+        }
+        packages.append("</package>");
+      }
+      shards.add(report("shard" + shard + ".xml", packages.toString()));
+    }
+
+    List<XmlReportParser.SourceFile> merged = merge(shards, new ArrayList<>());
+
+    assertThat(merged).hasSize(50);
+    assertThat(merged).allSatisfy(file -> assertThat(file.lines())
+      .hasSize(50)
+      .allSatisfy(line -> assertThat(line.coveredInstrs()).isEqualTo(1)));
+  }
+
+  @Test
+  void failing_report_does_not_stop_the_others() throws IOException {
+    Path valid = report("valid.xml",
+      "<package name='org/sonarlint/cli'><sourcefile name='File.java'><line nr='1' mi='0' ci='1' mb='0' cb='0'/></sourcefile>"
+        + "<sourcefile name='Other.java'><line nr='1' mi='0' ci='1' mb='0' cb='0'/></sourcefile></package>");
+    Path invalid = Paths.get("src", "test", "resources", "invalid_ci_in_line.xml");
+    Path missing = temp.resolve("missing.xml");
+    Map<Path, Exception> failures = new HashMap<>();
+
+    List<XmlReportParser.SourceFile> merged = new ArrayList<>();
+    new StreamingReportMerger(List.of(invalid, valid, missing), ImportSettings.defaults(), new NameTable(), failures::put).merge(merged::add);
+
+    assertThat(failures).containsOnlyKeys(invalid, missing);
+    assertThat(failures.get(invalid)).hasMessageStartingWith("Invalid report: failed to parse integer from the attribute 'ci'");
+    assertThat(merged).extracting(XmlReportParser.SourceFile::name).containsExactly("File.java", "Other.java");
+  }
+
+  @Test
+  void source_files_out_of_order_are_still_imported() throws IOException {
+    Path sorted = report("sorted.xml",
+      "<package name='org/a'><sourcefile name='A.java'><line nr='1' mi='1' ci='0' mb='0' cb='0'/></sourcefile>"
+        + "<sourcefile name='B.java'><line nr='1' mi='1' ci='0' mb='0' cb='0'/></sourcefile></package>");
+    Path unsorted = report("unsorted.xml",
+      "<package name='org/a'><sourcefile name='B.java'><line nr='1' mi='0' ci='1' mb='0' cb='0'/></sourcefile>"
+        + "<sourcefile name='A.java'><line nr='1' mi='0' ci='1' mb='0' cb='0'/></sourcefile></package>");
+
+    List<XmlReportParser.SourceFile> merged = merge(List.of(sorted, unsorted), new ArrayList<>());
+
+    assertThat(merged).extracting(XmlReportParser.SourceFile::name).containsExactlyInAnyOrder("A.java", "A.java", "B.java");
+    assertThat(merged).filteredOn(file -> file.name().equals("B.java")).singleElement()
+      .satisfies(file -> assertThat(file.lines()).containsExactly(new XmlReportParser.Line(1, 1, 1, 0, 0)));
+  }
+
+  private static List<XmlReportParser.SourceFile> merge(List<Path> reports, List<XmlReportParser.SourceFile> merged) {
+    new StreamingReportMerger(reports, ImportSettings.defaults(), new NameTable(), (path, e) -> {
+      throw new AssertionError("Unexpected failure of " + path, e);
+    }).merge(merged::add);
+    return merged;
+  }
+
+  private Path report(String name, String packages) throws IOException {
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?><report name='shard'>" + packages + "</report>";
+    return Files.write(temp.resolve(name), xml.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -20,10 +20,15 @@
 package org.sonar.plugins.jacoco;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.event.Level;
 import org.sonar.api.testfixtures.log.LogTesterJUnit5;
 
@@ -105,6 +110,37 @@ class WildcardPatternFileScannerTest {
         " with pattern '*.xml' threw a IOException: For performance reason, wildcard pattern search is not possible from filesystem root");
   }
 
+  @Test
+  void search_paths_in_archives(@TempDir Path temp) throws IOException {
+    Path dist = Files.createDirectory(temp.resolve("dist"));
+    try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(dist.resolve("coverage.zip")))) {
+      for (String entry : new String[] {"module-a/jacoco.xml", "module-b/jacoco.xml", "module-b/other.xml"}) {
+        output.putNextEntry(new ZipEntry(entry));
+        output.closeEntry();
+      }
+    }
+    Path archiveEntries = dist.toRealPath().resolve("coverage.zip!");
+
+    assertThat(scan(temp, "dist/coverage.zip!/module-a/jacoco.xml")).containsExactly(dist.resolve("coverage.zip!").resolve("module-a/jacoco.xml"));
+    assertThat(scan(temp, "**/*.zip!/**/jacoco.xml"))
+      .containsExactlyInAnyOrder(archiveEntries.resolve("module-a/jacoco.xml"), archiveEntries.resolve("module-b/jacoco.xml"));
+    assertThat(scan(temp, "dist\\coverage.zip!\\module-b\\*.xml"))
+      .containsExactlyInAnyOrder(dist.resolve("coverage.zip!").resolve("module-b/jacoco.xml"), dist.resolve("coverage.zip!").resolve("module-b/other.xml"));
+    assertThat(scan(temp, "dist/coverage.zip!/module-c/jacoco.xml")).isEmpty();
+    assertThat(scan(temp, "dist/missing.zip!/jacoco.xml")).isEmpty();
+    assertThat(logTester.logs()).isEmpty();
+  }
+
+  @Test
+  void search_paths_in_invalid_archive(@TempDir Path temp) throws IOException {
+    Path archive = temp.resolve("coverage.zip");
+    Files.write(archive, "not a zip archive".getBytes(StandardCharsets.UTF_8));
+
+    assertThat(scan(temp, "coverage.zip!/jacoco.xml")).isEmpty();
+    assertThat(logTester.logs(Level.ERROR)).singleElement().asString()
+      .startsWith("Failed to get Jacoco report paths: Reading archive '" + archive + "' with pattern 'jacoco.xml' threw a ZipException");
+  }
+
   @Test
   void to_unix_path() {
     assertThat(toUnixLikePath("c:\\a\\b")).isEqualTo("c:/a/b");
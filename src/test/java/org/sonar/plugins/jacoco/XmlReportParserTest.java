@@ -20,15 +20,22 @@
 package org.sonar.plugins.jacoco;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class XmlReportParserTest {
 
@@ -49,6 +56,88 @@ class XmlReportParserTest {
     assertThat(sourceFiles.stream().mapToInt(sf -> sf.lines().size()).sum()).isEqualTo(1321);
   }
 
+  @ParameterizedTest
+  @EnumSource(ImportSettings.Parser.class)
+  void should_share_names_between_reports(ImportSettings.Parser parser) throws URISyntaxException {
+    Path sample = load("jacoco.xml");
+    ImportSettings settings = ImportSettings.defaults().setParser(parser);
+    NameTable names = new NameTable();
+
+    List<XmlReportParser.SourceFile> first = new XmlReportParser(sample, settings, names).parse();
+    List<XmlReportParser.SourceFile> second = new XmlReportParser(sample, settings, names).parse();
+
+    assertThat(second).hasSameSizeAs(first);
+    for (int i = 0; i < first.size(); i++) {
+      assertThat(second.get(i).name()).isSameAs(first.get(i).name());
+      assertThat(second.get(i).packageName()).isSameAs(first.get(i).packageName());
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(ImportSettings.Parser.class)
+  void should_skip_the_lines_of_the_source_files_rejected_by_the_filter(ImportSettings.Parser parser) throws URISyntaxException {
+    Path sample = load("jacoco.xml");
+    List<XmlReportParser.SourceFile> all = new XmlReportParser(sample, ImportSettings.defaults().setParser(parser)).parse();
+    ImportSettings settings = ImportSettings.defaults().setParser(parser).setSourceFileFilter(sourceFile -> sourceFile.name().startsWith("S"));
+
+    List<XmlReportParser.SourceFile> filtered = new XmlReportParser(sample, settings).parse();
+
+    assertThat(filtered).hasSameSizeAs(all);
+    for (int i = 0; i < all.size(); i++) {
+      assertThat(filtered.get(i).name()).isEqualTo(all.get(i).name());
+      if (all.get(i).name().startsWith("S")) {
+        assertThat(filtered.get(i).lines()).isEqualTo(all.get(i).lines()).isNotEmpty();
+      } else {
+        assertThat(filtered.get(i).lines()).isEmpty();
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(ImportSettings.Parser.class)
+  void should_not_decode_the_lines_of_rejected_source_files(ImportSettings.Parser parser) throws URISyntaxException {
+    Path sample = load("invalid_ci_in_line.xml");
+    ImportSettings settings = ImportSettings.defaults().setParser(parser).setSourceFileFilter(sourceFile -> false);
+
+    List<XmlReportParser.SourceFile> sourceFiles = new XmlReportParser(sample, settings).parse();
+
+    assertThat(sourceFiles).extracting(XmlReportParser.SourceFile::name).containsExactly("File.java");
+    assertThat(sourceFiles.get(0).lines()).isEmpty();
+  }
+
+  @Test
+  void reports_are_parsed_whole_once_cached() throws URISyntaxException {
+    Path sample = load("jacoco.xml");
+    ImportSettings settings = ImportSettings.defaults().setReportCache(new ReportCache(1 << 20)).setSourceFileFilter(sourceFile -> false);
+
+    List<XmlReportParser.SourceFile> firstRead = new XmlReportParser(sample, settings).parse();
+    List<XmlReportParser.SourceFile> cached = new XmlReportParser(sample, settings).parse();
+
+    assertThat(firstRead.stream().mapToInt(sf -> sf.lines().size()).sum()).isZero();
+    assertThat(cached.stream().mapToInt(sf -> sf.lines().size()).sum()).isEqualTo(1321);
+  }
+
+  @Test
+  void should_stream_source_files_once_complete() throws URISyntaxException {
+    Path sample = load("jacoco.xml");
+    XmlReportParser report = new XmlReportParser(sample);
+    List<String> names = new ArrayList<>();
+    List<Integer> lineCounts = new ArrayList<>();
+
+    report.parse(sourceFile -> {
+      names.add(sourceFile.packageName() + "/" + sourceFile.name());
+      lineCounts.add(sourceFile.lines().size());
+    });
+
+    List<XmlReportParser.SourceFile> sourceFiles = report.parse();
+    assertThat(names).hasSize(36);
+    assertThat(lineCounts.stream().mapToInt(Integer::intValue).sum()).isEqualTo(1321);
+    for (int i = 0; i < sourceFiles.size(); i++) {
+      assertThat(names.get(i)).isEqualTo(sourceFiles.get(i).packageName() + "/" + sourceFiles.get(i).name());
+      assertThat(lineCounts.get(i)).isEqualTo(sourceFiles.get(i).lines().size());
+    }
+  }
+
   @Test
   void should_parse_all_attributes() throws URISyntaxException {
     Path sample = load("simple.xml");
@@ -186,6 +275,23 @@ class XmlReportParserTest {
             .isNotEqualTo(new XmlReportParser.Line(1, 2, 3, 4, 42));
   }
 
+  @Test
+  void source_file_lines_are_packed_and_visited_in_order() {
+    var sourceFile = new XmlReportParser.SourceFile("package", "File.java");
+    for (int i = 1; i <= 1000; i++) {
+      sourceFile.addLine(i, i + 1, i + 2, i + 3, i + 4);
+    }
+
+    List<XmlReportParser.Line> visited = new ArrayList<>();
+    sourceFile.forEachLine((nr, mi, ci, mb, cb) -> visited.add(new XmlReportParser.Line(nr, mi, ci, mb, cb)));
+
+    assertThat(sourceFile.lineCount()).isEqualTo(1000);
+    assertThat(visited).hasSize(1000).isEqualTo(sourceFile.lines());
+    assertThat(sourceFile.lines().get(999)).isEqualTo(new XmlReportParser.Line(1000, 1001, 1002, 1003, 1004));
+    assertThrows(IndexOutOfBoundsException.class, () -> sourceFile.lines().get(1000));
+    assertThrows(UnsupportedOperationException.class, () -> sourceFile.lines().add(new XmlReportParser.Line(1, 0, 0, 0, 0)));
+  }
+
   @Test
   void should_import_aggregate_report() throws URISyntaxException {
     Path sample = load("jacoco-aggregate.xml");
@@ -206,4 +312,72 @@ class XmlReportParserTest {
 
     assertThat(singleFile.groupName()).isEqualTo("library");
   }
+
+  @Test
+  void should_decode_int_attributes_as_integer_parsing_does() {
+    assertThat(XmlReportParser.decodeInt("0")).isZero();
+    assertThat(XmlReportParser.decodeInt("007")).isEqualTo(7);
+    assertThat(XmlReportParser.decodeInt("123456789")).isEqualTo(123456789);
+    assertThat(XmlReportParser.decodeInt("2147483647")).isEqualTo(Integer.MAX_VALUE);
+    assertThat(XmlReportParser.decodeInt("-12")).isEqualTo(-12);
+    assertThat(XmlReportParser.decodeInt("+12")).isEqualTo(12);
+    for (String invalid : new String[] {"", "2147483648", "12a", " 1", "1.0"}) {
+      assertThat(XmlReportParser.decodeInt(invalid)).as(invalid).isEqualTo(Long.MIN_VALUE);
+    }
+  }
+
+  @Test
+  void decoding_int_attributes_does_not_allocate() {
+    com.sun.management.ThreadMXBean threads = allocationCountingThreadMXBean();
+    String[] values = {"0", "1", "42", "65535", "123456789", "2147483647", "-1"};
+    long sum = 0;
+    for (String value : values) {
+      sum += XmlReportParser.decodeInt(value);
+    }
+
+    long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    for (int i = 0; i < 100_000; i++) {
+      sum += XmlReportParser.decodeInt(values[i % values.length]);
+    }
+    long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+    assertThat(sum).isPositive();
+    assertThat(allocated).isLessThan(1024);
+  }
+
+  @Test
+  void byte_parser_only_allocates_the_storage_of_the_lines() throws IOException {
+    com.sun.management.ThreadMXBean threads = allocationCountingThreadMXBean();
+    StringBuilder content = new StringBuilder("<report name=\"r\"><package name=\"org/example\">\n");
+    for (int file = 0; file < 100; file++) {
+      content.append("<sourcefile name=\"File").append(file).append(".java\">\n");
+      for (int line = 1; line <= 500; line++) {
+        content.append("<line nr=\"").append(line).append("\" mi=\"").append(line % 7).append("\" ci=\"").append(line * 3)
+          .append("\" mb=\"0\" cb=\"").append(line % 2).append("\"/>\n");
+      }
+      content.append("</sourcefile>\n");
+    }
+    Path report = temp.resolve("report.xml");
+    Files.writeString(report, content.append("</package></report>"));
+    XmlReportParser parser = new XmlReportParser(report, ImportSettings.defaults().setParser(ImportSettings.Parser.BYTES).setParserThreads(1));
+    int[] lines = new int[1];
+    parser.parse(sourceFile -> lines[0] += sourceFile.lineCount());
+
+    lines[0] = 0;
+    long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    parser.parse(sourceFile -> lines[0] += sourceFile.lineCount());
+    long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+    assertThat(lines[0]).isEqualTo(100 * 500);
+    // 20 bytes per line for the packed counters, plus the copies made while growing them
+    assertThat(allocated / lines[0]).isLessThan(100);
+  }
+
+  private static com.sun.management.ThreadMXBean allocationCountingThreadMXBean() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean allocationCounting = (com.sun.management.ThreadMXBean) threads;
+    assumeTrue(allocationCounting.isThreadAllocatedMemorySupported() && allocationCounting.isThreadAllocatedMemoryEnabled());
+    return allocationCounting;
+  }
 }